@@ -14,6 +14,7 @@ package com.nowhere.sample;
 import java.awt.BorderLayout;
 import java.awt.Container;
 import java.awt.EventQueue;
+import java.io.File;
 
 import org.apache.log4j.Logger;
 
@@ -31,8 +32,9 @@ import com.amazon.kindle.kindlet.KindletContext;
 //  - handling screen sizing to adjust to different kindle models and device orientation
 //  - catching five-way controller and general keyboard handling events
 //  - understanding screen redraws
-//  - painting a game board either with child components or via paint()
+//  - painting a game board via paint() from a lightweight scene graph
 //  - loading pre-scaled images to improve drawing speed 
+//  - no work while the user is idle, and measuring what each session costs in battery
 //
 //
 //  Some more info about Kindle Development:
@@ -92,6 +94,15 @@ public class App extends AbstractKindlet
 	
 	
 	
+	//
+	// Rendering mode.  When on, the board is composed on a render thread and paint() only 
+	// copies the finished frame to the screen (see FrameRenderer.java), so key handling 
+	// doesn't have to wait for slow paints.  When off, paint() draws the scene itself.
+	//
+	public static boolean renderOffload= false;
+	
+	
+	
 	
 	
 	/*****************************************************************************************
@@ -110,6 +121,8 @@ public class App extends AbstractKindlet
 	KindletContext kindleContext;
 	Container rootContainer;
 	GameBoard gameBoard;
+	Workers workers;
+	FrameRenderer renderer;
 	boolean initialStartDone;
 
 	
@@ -123,10 +136,12 @@ public class App extends AbstractKindlet
 	public void create(final KindletContext context)
 	{
 		App.logit("App::create");
+		Trace.begin("App::create");
 				
 		this.kindleContext= context;
 		this.rootContainer= this.kindleContext.getRootContainer(); 
 
+		Trace.end("App::create");
 		App.logit("App::create done");
 	}
 	
@@ -138,6 +153,7 @@ public class App extends AbstractKindlet
 	public void start()
 	{
 		App.logit("App::start");
+		Trace.begin("App::start");
 
 		synchronized (this) {	// avoid having a threaded stop() event intercept start() before being finished
 			
@@ -147,6 +163,9 @@ public class App extends AbstractKindlet
 			
 	    	super.start();
 	
+			// battery accounting for this start() -> stop() window (see PowerMonitor.java)
+			PowerMonitor.beginWindow();
+			
 			//
 			// Be prepared for start() to be called multiple times during the lifecycle. 
 			// E.g. at actual app-start, but also after coming back from screen saver.
@@ -189,9 +208,30 @@ public class App extends AbstractKindlet
 			// stop() method because otherwise they would continue running and drain the system while sleeping.  
 			// Hence they need to be recreated on both start() types (initial start() and usb/screensaver start()).
 			
-			/* TODO: build timers and possibly background threads (if any) ... */
+			/* TODO: build timers ... */
+			
+			// Our background threads live in the worker pool (see Workers.java). Queued work 
+			// survives a stop(), the thread itself is recreated here.
+			if (this.workers==null) {
+				this.workers= new Workers(8);
+			}
+			this.workers.resume();
+			
+			// The render thread, if we use one, is just like that
+			if (App.renderOffload) {
+				if (this.renderer==null) {
+					this.renderer= new FrameRenderer();
+				}
+				this.renderer.resume();
+			}
+			
+			// The board may have work left over from the last stop() as well
+			if (this.gameBoard!=null) {
+				this.gameBoard.resume();
+			}
 		}
 		
+		Trace.end("App::start");
 		App.logit("App::start done");
 	}
 	
@@ -199,16 +239,29 @@ public class App extends AbstractKindlet
 	
     // ---------------------------------------------------------------------------------------
 	//  first start after create(). most of your app building code will go here. 
+	//  
+	//  synchronized: a threaded stop() must not return while we're half way through 
+	//  building the app (it will wait for us, or we will see its stopped flag)
     // ---------------------------------------------------------------------------------------
-	public void initalStart() 
+	public synchronized void initalStart() 
 	{
 		App.logit("App::initalStart");
+		Trace.begin("App::initalStart");
 
 		// don't bother with executing this when someone tried to stopped the app right when 
 		// starting (if you believe this is insane, wait until you submit your app and get  
 		// Q/A results).
 		if (App.isStopped()) {
 			App.logit("App::initalStart early exit (stopped)");
+			Trace.end("App::initalStart");
+			return; 
+		}
+		
+		// every start() that came before the EDT got to us has posted one of these, but 
+		// there's only one app to build
+		if (this.initialStartDone) {
+			App.logit("App::initalStart early exit (already done)");
+			Trace.end("App::initalStart");
 			return; 
 		}
 		
@@ -227,7 +280,7 @@ public class App extends AbstractKindlet
 		// intro menu and help panel. For this simple demo a BorderLayout will do.
 		this.rootContainer.setLayout(new BorderLayout());
 
-		this.gameBoard= new GameBoard();
+		this.gameBoard= this.createGameBoard();
 
 		// Add game board.  The game board will cover as much of the main area as possible  
 		// and will have its doLayout() called (the root's BorderLayout does all this) .
@@ -247,17 +300,28 @@ public class App extends AbstractKindlet
 		// After this point, this function will not be called again. 
 		this.initialStartDone= true;
 	
+		Trace.end("App::initalStart");
 		App.logit("App::initalStart done");
 	}
 	
 	
 	
+	// build the board (the stress harness hands in its own to check the board lifecycle, 
+	// see LifecycleStress.java)
+	GameBoard createGameBoard()
+	{
+		return new GameBoard(this.workers, this.renderer);
+	}
+	
+	
+	
     // ---------------------------------------------------------------------------------------
 	//  temporary or final stop. don't change this code unless you use Timers or Threads
     // ---------------------------------------------------------------------------------------
 	public void stop()
 	{
 		App.logit("App::stop");
+		Trace.begin("App::stop");
 
 		// In order to handle stop() correctly, longish operations in threads throughout the program should 
 		// call App.isStopped() periodically and exit quickly (the framework system requires all threads to 
@@ -266,10 +330,14 @@ public class App extends AbstractKindlet
 		App.setStopped(true);	// keep this outside "synchronized" 
 								// (we might even want to abort a start() call in progress)
 
+		PowerMonitor.Summary summary= null;
 		
 		synchronized (this) {	// avoid having threaded stop() and start() calls execute at the same time (yes, this can happen)
 			
 	    	App.logit("App::stop syncrhonized");
+	    	
+	    	// set again: a start() that got the lock before us has cleared it in the meantime
+			App.setStopped(true);
 
 			// Note: stop() can be called multiple times throughout the lifecycle, i.e. stop() 
 	    	// does not mean that the app actually ends.  Stop() is also called before going to 
@@ -285,8 +353,27 @@ public class App extends AbstractKindlet
 	    	// during screen-saver (and thus they will need to be recreated on every start() iteration).
 
 			/* TODO: ... tear down timers if you have any... */
+			
+			// Take what this start() -> stop() window cost us (wakeups, CPU time) while our 
+			// threads are still around to be counted (it gets logged below)
+			summary= PowerMonitor.endWindow();
+			
+			// Same for threads: cancel the background work in progress and end the worker thread 
+			// (anything still queued will run after the next start())
+			if (this.workers!=null) {
+				this.workers.pause();
+			}
+			if (this.renderer!=null) {
+				this.renderer.pause();
+			}
+		}
+		
+		// logging the battery summary takes a while, don't keep a start() waiting for it
+		if (summary!=null) {
+			summary.log();
 		}
 		
+		Trace.end("App::stop");
 		App.logit("App::stop done");
 	}
 	
@@ -298,6 +385,7 @@ public class App extends AbstractKindlet
 	public void destroy()
 	{
 		App.logit("App::destroy");
+		Trace.begin("App::destroy");
 		
 		// Actual deconstruction. destroy() will be called after stop() is complete and 
 		// when all threads have finished.
@@ -313,6 +401,14 @@ public class App extends AbstractKindlet
 		
 		/* TODO: below goes your app exit code. Clean up as much stuff as you can. */
 
+		// Drop any background work first, so nothing touches the board while we tear it down
+		if (this.workers!=null) {
+			this.workers.shutdown();
+		}
+		if (this.renderer!=null) {
+			this.renderer.destroy();
+		}
+
 		// Deconstruct and null out all object pointers (see comment in this.gameBoard.destroy())
 		// - see http://forums.kindlecentral.com/forums/thread.jspa?threadID=535&tstart=0 (item Posted: Nov 8, 2010 6:47 PM)
 
@@ -320,12 +416,18 @@ public class App extends AbstractKindlet
 		// the system will expect the exactly same components to remain on screen when it wakes up again
 		this.rootContainer.setLayout(null);  // no need to waste time on implicit root-layout calls down from here 
 		this.rootContainer.removeAll();
-		this.gameBoard.destroy();
+		
+		// the board may never have been built (e.g. stopped right after start(), see initalStart())
+		if (this.gameBoard!=null) {
+			this.gameBoard.destroy();
+		}
 		
 		
 		// Null out pointers
 		// - see http://forums.kindlecentral.com/forums/thread.jspa?threadID=535&tstart=0 (item Posted: Nov 8, 2010 6:47 PM)
 		this.gameBoard= null;
+		this.workers= null;
+		this.renderer= null;
 
 		
 		// Call system garbage collection to release instances where possible. Doesn't hurt and may 
@@ -333,6 +435,14 @@ public class App extends AbstractKindlet
 		// 	see http://forums.kindlecentral.com/forums/thread.jspa?messageID=851&#851
 		System.gc();
 		
+		
+		// If tracing is on, write the session timeline (see Trace.java) next to our other 
+		// files.  Load it into chrome://tracing to see what ran on which thread and when.
+		Trace.end("App::destroy");
+		if (Trace.enabled && this.kindleContext!=null) {
+			Trace.export(new File(this.kindleContext.getHomeDirectory(), "trace.json"));
+		}
+		
 		App.logit("App::destroy done.\n\nOver and out!");
 	}
 }  
\ No newline at end of file
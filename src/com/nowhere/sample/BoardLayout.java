@@ -0,0 +1,343 @@
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+//  Kindle-ConceptDemo
+//
+//  Source code (C) Copyright 2010 Markus Schmidt (m.schmidt@emtec.com)
+//  Published under MIT License (http://en.wikipedia.org/wiki/MIT_License)
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+
+
+package com.nowhere.sample;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Dimension;
+import java.awt.LayoutManager2;
+import java.awt.Rectangle;
+import java.util.Hashtable;
+import java.util.Vector;
+
+
+
+
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+//  A layout manager for the game board
+//
+//  Components are added with one of the constraints below (just like BorderLayout),
+//  e.g. board.add(label, BoardLayout.STATUS).  Slots don't need a component though: a
+//  board painting everything itself (see Scene.java) just uses the computed bounds.
+//
+//  The layout is split into two parts:
+//  - geometry: computing the bounds of each slot for a given container size.  This is
+//    cheap and synchronous, and the result is cached per size (so going back and forth
+//    between portrait and landscape only costs a hash lookup the second time around).
+//  - preparation: anything expensive that depends on the new size (e.g. scaling images).
+//    This is handed to a Listener, which can defer it as it sees fit.  Once it's done,
+//    the listener can park the result here with setPrepared(), and gets it back with
+//    the next boardResized() for that size, so a known size doesn't get prepared twice.
+//    Prepared stuff is big, so only the last PREPARED_CACHE_SIZE sizes are kept (enough
+//    for portrait and landscape), older ones are handed back with preparedDropped().
+//
+//  Note: the framework calls doLayout() much more often than you'd expect, mostly with
+//  the same size.  Bounds are only applied when the size actually changed, otherwise
+//  we'd snap moved components (the checker) back to their initial positions.
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+public class BoardLayout implements LayoutManager2
+{
+	//
+	// constraints (one component per slot)
+	//
+	public static final String BACKGROUND= "Background";	// covers the whole board
+	public static final String PIECE= "Piece";				// fixed size, centered
+	public static final String STATUS= "Status";			// full width at the bottom, preferred height
+
+	static final int SLOT_BACKGROUND= 0;
+	static final int SLOT_PIECE= 1;
+	static final int SLOT_STATUS= 2;
+	static final int SLOT_COUNT= 3;
+
+	// number of sizes we keep prepared stuff for
+	static final int PREPARED_CACHE_SIZE= 2;
+
+
+	//
+	// listener for the (deferrable) preparation part of a layout
+	//
+	public interface Listener
+	{
+		// called (on the layout thread, usually the EDT) after new bounds were applied.
+		// bounds[] is indexed by slot and must not be modified.  prepared is what was
+		// setPrepared() for this size before (null if nothing or if it was dropped).
+		void boardResized(Container parent, Dimension size, Rectangle[] bounds, Object prepared);
+
+		// something set with setPrepared() was dropped from the cache (e.g. flush images)
+		void preparedDropped(Dimension size, Object prepared);
+	}
+
+
+	//
+	// layout members
+	//
+	Component[] slots= new Component[SLOT_COUNT];
+	int pieceSize;
+	int statusHeight;		// used when there's no status component
+	Listener listener;
+
+	// computed bounds per container size (Dimension -> Rectangle[])
+	Hashtable boundsCache= new Hashtable();
+
+	// prepared stuff for the last few sizes (Dimension -> Object), most recent size last
+	Hashtable preparedCache= new Hashtable();
+	Vector preparedSizes= new Vector();
+
+	// size the bounds were last applied for
+	Dimension appliedSize;
+
+
+	//
+	// constructor
+	//
+	public BoardLayout(int piece_size)
+	{
+		this.pieceSize= piece_size;
+	}
+
+
+	//
+	// destructor (see GameBoard.destroy())
+	//
+	public void destroy()
+	{
+		while (!this.preparedSizes.isEmpty()) {
+			this.dropPrepared((Dimension)this.preparedSizes.elementAt(0));
+		}
+
+		for (int i= 0; i<SLOT_COUNT; i++) {
+			this.slots[i]= null;
+		}
+		this.boundsCache.clear();
+		this.appliedSize= null;
+		this.listener= null;
+	}
+
+
+	public void setListener(Listener listener)
+	{
+		this.listener= listener;
+	}
+
+
+	//
+	// height of the status slot when there is no component to ask for its preferred height
+	//
+	public void setStatusHeight(int height)
+	{
+		if (this.statusHeight!=height) {
+			this.statusHeight= height;
+			this.invalidateCache();
+		}
+	}
+
+
+	//
+	// forget cached geometry (e.g. after the status font changed its preferred height)
+	//
+	public void invalidateCache()
+	{
+		this.boundsCache.clear();
+		this.appliedSize= null;
+	}
+
+
+
+	//
+	// geometry: compute (or look up) the bounds of all slots for the given size
+	//
+	public Rectangle[] getBounds(Dimension size)
+	{
+		Rectangle[] bounds= (Rectangle[])this.boundsCache.get(size);
+		if (bounds!=null) {
+			return bounds;
+		}
+
+		bounds= new Rectangle[SLOT_COUNT];
+
+		// background covers everything
+		bounds[SLOT_BACKGROUND]= new Rectangle(0,0, size.width,size.height);
+
+		// fixed size piece, start in the middle
+		int ps= this.pieceSize;
+		bounds[SLOT_PIECE]= new Rectangle(size.width/2-ps/2,size.height/2-ps/2, ps,ps);
+
+		// status at the bottom with its preferred height (pref. height will change depending on font)
+		int sh= this.statusHeight;
+		if (this.slots[SLOT_STATUS]!=null) {
+			sh= this.slots[SLOT_STATUS].getPreferredSize().height;
+		}
+		bounds[SLOT_STATUS]= new Rectangle(0,size.height-sh, size.width,sh);
+
+		// cache with a private copy of the key (callers tend to reuse their Dimension)
+		this.boundsCache.put(new Dimension(size), bounds);
+
+		return bounds;
+	}
+
+
+
+	//
+	// preparation: keep what the listener prepared for a size (replaces what was there)
+	//
+	public void setPrepared(Dimension size, Object prepared)
+	{
+		if (this.preparedCache.get(size)!=prepared) {
+			this.dropPrepared(size);
+		}
+		else {
+			this.preparedSizes.removeElement(size);
+		}
+
+		Dimension key= new Dimension(size);
+		this.preparedCache.put(key, prepared);
+		this.preparedSizes.addElement(key);
+
+		while (this.preparedSizes.size()>PREPARED_CACHE_SIZE) {
+			this.dropPrepared((Dimension)this.preparedSizes.elementAt(0));
+		}
+	}
+
+
+	// look up what was prepared for a size (null if nothing), it counts as recently used
+	public Object getPrepared(Dimension size)
+	{
+		Object prepared= this.preparedCache.get(size);
+		if (prepared!=null) {
+			int i= this.preparedSizes.indexOf(size);
+			Object key= this.preparedSizes.elementAt(i);
+			this.preparedSizes.removeElementAt(i);
+			this.preparedSizes.addElement(key);
+		}
+		return prepared;
+	}
+
+
+	private void dropPrepared(Dimension size)
+	{
+		Object prepared= this.preparedCache.remove(size);
+		this.preparedSizes.removeElement(size);
+		if (prepared!=null && this.listener!=null) {
+			this.listener.preparedDropped(size, prepared);
+		}
+	}
+
+
+
+	/*****************************************************************************************
+	* LayoutManager2
+	*****************************************************************************************/
+
+	public void addLayoutComponent(Component comp, Object constraints)
+	{
+		int slot= BoardLayout.slotFor(constraints);
+		if (slot<0) {
+			throw new IllegalArgumentException("BoardLayout: unknown constraint " + constraints);
+		}
+		this.slots[slot]= comp;
+		this.invalidateCache();
+	}
+
+	public void addLayoutComponent(String name, Component comp)
+	{
+		this.addLayoutComponent(comp, name);
+	}
+
+	public void removeLayoutComponent(Component comp)
+	{
+		for (int i= 0; i<SLOT_COUNT; i++) {
+			if (this.slots[i]==comp) {
+				this.slots[i]= null;
+				this.invalidateCache();
+			}
+		}
+	}
+
+
+	public void layoutContainer(Container parent)
+	{
+		final Dimension size= parent.getSize();
+
+		// this check is necessary (doLayout will be called often!)
+		if (this.appliedSize!=null && this.appliedSize.equals(size)) {
+			App.logit("BoardLayout::layoutContainer early exit (same size)");
+			return;
+		}
+		this.appliedSize= size;
+
+		Rectangle[] bounds= this.getBounds(size);
+		for (int i= 0; i<SLOT_COUNT; i++) {
+			if (this.slots[i]!=null) {
+				Rectangle r= bounds[i];
+				this.slots[i].setBounds(r.x,r.y, r.width,r.height);
+			}
+		}
+
+		App.logit("BoardLayout::layoutContainer applied for " + size);
+
+		if (this.listener!=null) {
+			this.listener.boardResized(parent, size, bounds, this.getPrepared(size));
+		}
+	}
+
+
+	public Dimension preferredLayoutSize(Container parent)
+	{
+		// we take whatever the root gives us
+		return parent.getSize();
+	}
+
+	public Dimension minimumLayoutSize(Container parent)
+	{
+		return new Dimension(this.pieceSize, this.pieceSize);
+	}
+
+	public Dimension maximumLayoutSize(Container target)
+	{
+		return new Dimension(Integer.MAX_VALUE, Integer.MAX_VALUE);
+	}
+
+	public float getLayoutAlignmentX(Container target)
+	{
+		return 0.5f;
+	}
+
+	public float getLayoutAlignmentY(Container target)
+	{
+		return 0.5f;
+	}
+
+	public void invalidateLayout(Container target)
+	{
+		// nothing to do: geometry only depends on the size (and is cached by it)
+	}
+
+
+
+	//
+	// map a constraint to its slot index (-1 if unknown)
+	//
+	static int slotFor(Object constraints)
+	{
+		if (BACKGROUND.equals(constraints)) {
+			return SLOT_BACKGROUND;
+		}
+		if (PIECE.equals(constraints)) {
+			return SLOT_PIECE;
+		}
+		if (STATUS.equals(constraints)) {
+			return SLOT_STATUS;
+		}
+		return -1;
+	}
+}
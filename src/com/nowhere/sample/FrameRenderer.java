@@ -0,0 +1,377 @@
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+//  Kindle-ConceptDemo
+//
+//  Source code (C) Copyright 2010 Markus Schmidt (m.schmidt@emtec.com)
+//  Published under MIT License (http://en.wikipedia.org/wiki/MIT_License)
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+
+
+package com.nowhere.sample;
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Image;
+import java.awt.Rectangle;
+
+
+
+
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+//  Composing frames on a render thread (optional, see App.renderOffload)
+//
+//  Normally GameBoard.paint() draws the scene on the EDT, so a key press waits behind
+//  every slow paint.  With the renderer, the EDT only hands over a snapshot of the scene
+//  (request()), and a render thread composes it into one of two frames.  When a frame
+//  is done it gets published and the board is asked to repaint, and paint() then just
+//  copies the latest finished frame to the screen (blit()).
+//
+//  Two frames: the render thread always draws into the one that isn't published.  Each
+//  frame has its own lock, held while drawing into it or copying it to the screen, so
+//  the EDT never sees a half drawn frame and only ever waits for a copy, not a compose.
+//
+//  Each frame only gets redrawn where something changed since it was last drawn (the
+//  dirty areas of all requests in between).
+//
+//  Lifecycle (see App.java): resume() in start(), pause() in stop() (a pending request
+//  survives and gets composed after the next start()), destroy() in destroy().
+//
+//  The render thread runs below the EDT (just like the worker, see Workers.java), so on
+//  the single core a compose in progress never holds up a key press.  Frames are made by
+//  the board itself (Component.createImage()), in whatever format suits its screen, we
+//  don't count on the profile's BufferedImage constructors.
+//
+//  If composing fails, there's no frame until the next compose works out, and paint()
+//  draws the scene itself meanwhile.  Should the render thread be gone for good while
+//  we're resumed, request() returns false and the board has to repaint() on its own.
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+public class FrameRenderer
+{
+	// how long pause() waits for a compose in progress
+	static final long PAUSE_JOIN_MILLIS= 1000;
+
+	// below the EDT (same as the worker's decode lane)
+	static final int RENDER_PRIORITY= Thread.NORM_PRIORITY-1;
+
+
+	//
+	// renderer members (guarded by "this", except for drawing into/from a frame)
+	//
+	Component target;	 // gets repainted when a frame is published
+
+	Image[] frames= new Image[2];
+	Rectangle[] stale= new Rectangle[2];	// per frame: area changed since it was drawn
+	int front= -1;							// published frame (-1: none yet)
+
+	Scene pending;							// latest snapshot still to be composed
+	Dimension pendingSize;
+	Rectangle pendingArea;					// area to repaint when it's done
+
+	Thread thread;
+	boolean resumed;						// between resume() and pause()
+
+
+
+	public synchronized void setTarget(Component target)
+	{
+		this.target= target;
+	}
+
+
+
+	/*****************************************************************************************
+	* EDT side
+	*****************************************************************************************/
+
+	//
+	// compose a snapshot of the scene (replaces a request that hasn't been started yet).
+	// returns false if we can't, then the caller has to repaint() the usual way.
+	//
+	public synchronized boolean request(Scene snapshot, Dimension size, Rectangle dirty)
+	{
+		// nothing to compose on an empty board (and there are no 0x0 frames)
+		if (size.width<=0 || size.height<=0) {
+			return false;
+		}
+
+		// the render thread died on us (we're not paused, so it should be there)
+		if (this.resumed && (this.thread==null || !this.thread.isAlive())) {
+			return false;
+		}
+
+		this.pending= snapshot;
+		this.pendingSize= size;
+
+		for (int i= 0; i<2; i++) {
+			if (this.stale[i]!=null) {
+				this.stale[i].add(dirty);
+			}
+			else {
+				this.stale[i]= new Rectangle(dirty);
+			}
+		}
+
+		if (this.pendingArea!=null) {
+			this.pendingArea.add(dirty);
+		}
+		else {
+			this.pendingArea= new Rectangle(dirty);
+		}
+
+		this.notifyAll();
+		return true;
+	}
+
+
+	//
+	// copy the latest finished frame, returns false if there is none of the given size
+	//
+	public boolean blit(Graphics g, Dimension size)
+	{
+		Image frame;
+		synchronized (this) {
+			frame= (this.front>=0) ? this.frames[this.front] : null;
+		}
+
+		if (frame==null || frame.getWidth(null)!=size.width || frame.getHeight(null)!=size.height) {
+			return false;
+		}
+
+		Trace.begin("FrameRenderer::blit");
+		synchronized (frame) {
+			g.drawImage(frame, 0,0, null);
+		}
+		Trace.end("FrameRenderer::blit");
+
+		return true;
+	}
+
+
+
+	/*****************************************************************************************
+	* lifecycle
+	*****************************************************************************************/
+
+	//
+	// (re)create the render thread (call from start())
+	//
+	public synchronized void resume()
+	{
+		if (this.thread!=null) {
+			return;
+		}
+
+		App.logit("FrameRenderer::resume");
+
+		this.resumed= true;
+		this.thread=
+			new Thread("FrameRenderer")
+				{
+					public void run()
+					{
+						FrameRenderer.this.work(this);
+					}
+				};
+		this.thread.setPriority(FrameRenderer.RENDER_PRIORITY);
+		this.thread.start();
+	}
+
+
+	//
+	// end the render thread (call from stop())
+	//
+	public void pause()
+	{
+		Thread renderer;
+		synchronized (this) {
+			this.resumed= false;
+			renderer= this.thread;
+			if (renderer==null) {
+				return;
+			}
+
+			App.logit("FrameRenderer::pause");
+
+			this.thread= null;
+			this.notifyAll();
+		}
+
+		// wait outside the lock, the render thread needs it to finish
+		try {
+			renderer.join(FrameRenderer.PAUSE_JOIN_MILLIS);
+		}
+		catch (InterruptedException e) {
+			// fall through
+		}
+
+		App.logit("FrameRenderer::pause done");
+	}
+
+
+	//
+	// destructor (call from destroy())
+	//
+	public void destroy()
+	{
+		this.pause();
+
+		synchronized (this) {
+			for (int i= 0; i<2; i++) {
+				if (this.frames[i]!=null) {
+					this.frames[i].flush();
+					this.frames[i]= null;
+				}
+				this.stale[i]= null;
+			}
+			this.front= -1;
+			this.pending= null;
+			this.pendingArea= null;
+			this.target= null;
+		}
+	}
+
+
+
+	/*****************************************************************************************
+	* the render thread
+	*****************************************************************************************/
+
+	private void work(Thread self)
+	{
+		App.logit("FrameRenderer::work");
+
+		try {
+			this.renderLoop(self);
+		}
+		finally {
+			// however we got here, don't leave a dead thread behind for resume() to trust
+			synchronized (this) {
+				if (this.thread==self) {
+					App.logit("FrameRenderer::work render thread ended unexpectedly");
+					this.thread= null;
+					this.front= -1;
+				}
+			}
+		}
+
+		App.logit("FrameRenderer::work done");
+	}
+
+
+	private void renderLoop(Thread self)
+	{
+		while (true) {
+			Scene scene;
+			Dimension size;
+			Rectangle area;
+			Rectangle clip;
+			int back;
+
+			synchronized (this) {
+				// sleep until there's something to compose or we're paused (no polling)
+				while (this.thread==self && this.pending==null) {
+					try {
+						this.wait();
+					}
+					catch (InterruptedException e) {
+						// check again
+					}
+				}
+				if (this.thread!=self) {
+					break;	// paused (the request, if any, stays pending)
+				}
+
+				scene= this.pending;
+				size= this.pendingSize;
+				area= this.pendingArea;
+				this.pending= null;
+				this.pendingArea= null;
+
+				back= (this.front==0) ? 1 : 0;
+				clip= this.stale[back];
+				this.stale[back]= null;
+			}
+
+			PowerMonitor.wakeup("render");
+			boolean composed= false;
+			try {
+				this.compose(back, scene, size, clip);
+				composed= true;
+			}
+			catch (Throwable e) {
+				App.logit("FrameRenderer::work compose failed : " + e);
+			}
+
+			Component repaint;
+			synchronized (this) {
+				if (composed) {
+					this.front= back;
+				}
+				else {
+					// the frame may be half drawn, start over with a new one next time.  No 
+					// frame to show meanwhile, so paint() draws the scene itself.
+					this.frames[back]= null;
+					this.front= -1;
+				}
+				repaint= this.target;
+			}
+
+			if (repaint!=null) {
+				repaint.repaint(area.x,area.y, area.width,area.height);
+			}
+		}
+	}
+
+
+	//
+	// draw the scene into a frame (only where it's stale, unless the frame is new)
+	//
+	private void compose(int back, Scene scene, Dimension size, Rectangle clip)
+	{
+		Trace.begin("FrameRenderer::compose");
+
+		Image frame= this.frames[back];	 // (only this thread changes the frames)
+		if (frame==null || frame.getWidth(null)!=size.width || frame.getHeight(null)!=size.height) {
+			if (frame!=null) {
+				frame.flush();
+			}
+			Component target;
+			synchronized (this) {
+				target= this.target;
+			}
+			// an offscreen image in the screen's own format (null while the board isn't 
+			// displayable, then paint() has to do without us)
+			frame= (target!=null) ? target.createImage(size.width, size.height) : null;
+			if (frame==null) {
+				Trace.end("FrameRenderer::compose");
+				throw new IllegalStateException("no offscreen image for " + size);
+			}
+			clip= null;
+			synchronized (this) {
+				this.frames[back]= frame;
+			}
+		}
+
+		synchronized (frame) {
+			Graphics g= frame.getGraphics();
+			if (clip!=null) {
+				g.setClip(clip.x,clip.y, clip.width,clip.height);
+			}
+			else {
+				g.setClip(0,0, size.width,size.height);
+			}
+			Rectangle r= g.getClipBounds();
+			g.setColor(Color.WHITE);
+			g.fillRect(r.x,r.y, r.width,r.height);
+			scene.render(g);
+			g.dispose();
+		}
+
+		Trace.end("FrameRenderer::compose");
+	}
+}
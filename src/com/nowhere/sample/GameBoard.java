@@ -15,9 +15,9 @@ import java.awt.Color;
 import java.awt.Component;
 import java.awt.Container;
 import java.awt.Dimension;
+import java.awt.EventQueue;
 import java.awt.Font;
 import java.awt.Graphics;
-import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.Rectangle;
 import java.awt.Toolkit;
@@ -25,8 +25,6 @@ import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 
 import com.amazon.kindle.kindlet.event.KindleKeyCodes;
-import com.amazon.kindle.kindlet.ui.KImage;
-import com.amazon.kindle.kindlet.ui.KLabel;
 import com.amazon.kindle.kindlet.ui.KindletUIResources;
 import com.amazon.kindle.kindlet.ui.KindletUIResources.KFontStyle;
 
@@ -37,7 +35,8 @@ import com.amazon.kindle.kindlet.ui.KindletUIResources.KFontStyle;
 //
 //  A class to draw a board with a checker and handle keyboard events
 //
-//  (Two additional helper classes near the bottom)  
+//  The board has no child components, everything (background, checker, label and 
+//  decoration) is a node of a Scene (see Scene.java) which is drawn from paint(). 
 //
 //
 /////////////////////////////////////////////////////////////////////////////////////////
@@ -50,61 +49,72 @@ public class GameBoard extends Container
 	// board members
 	// 
 	
-	// general images
+	// general images (and the pack they come from, see ResourcePack.java)
+	ResourcePack resources;
 	Image backgroundImage;
 	Image elementImage;
 	
-	// background
-	KImageSnoop backgroundPane;	 // KImageSnoop class definition at bottom of this file
-	
-	// game elements 
-	GameTile checkerPane;
+	// everything we draw and the nodes we need to get back to 
+	Scene scene;
+	int backgroundNode;
+	int checkerNode;
 	
 	// the bottom label 
-	KLabel someLabel;
+	String labelText;
+	Font labelFont;
 	
 	// other stuff
+	BoardLayout boardLayout;
 	Dimension layoutSize;
 	KeyAdapter keyListener2;
 	
+	// background work (see Workers.java) and the image scaling in progress
+	Workers workers;
+	Workers.Task imageTask;
+	Workers.Task stalledImageTask;	 // stopped half way on the EDT, see scheduleImages()
+	
+	// composes frames on its own thread, null if we paint in paint() (see FrameRenderer.java)
+	FrameRenderer renderer;
+	
 	
 	//
 	// constructor
 	// 
-	GameBoard()
+	GameBoard(Workers workers, FrameRenderer renderer)
 	{
 		App.logit("GameBoard::Board");
 		
-		// No layout manager, we move stuff around ourselves 
-		// (this is essential for the way we're playing with components) 
-		this.setLayout(null);// Important: if you do this, you will need to override "void doLayout() and not call super.doLayout()"
+		this.workers= workers;
+		this.renderer= renderer;
+		if (this.renderer!=null) {
+			this.renderer.setTarget(this);
+		}
+		
+		// Our own layout manager (see BoardLayout.java).  There are no components to arrange,  
+		// but it computes (and caches) where the background, checker and label go for a given size.
+		// For the sample we use a fixed size for the checker (normally this would have to scale 
+		// somehow to fit the background scaling)
+		this.boardLayout= new BoardLayout(50);
+		this.setLayout(this.boardLayout);
+		this.registerAsLayoutListener();
 
 		// Load base images (we will use them later to make scaled versions).
 		// Simply drag/drop these files into the same eclipse package/folder where the App.java file resides 
-		Toolkit tk= Toolkit.getDefaultToolkit();
-		this.backgroundImage= tk.createImage(getClass().getResource("background.gif")); // any 600x800 image
-		this.elementImage= tk.createImage(getClass().getResource("checker.png"));	// a circle in a 40x40 with transparent bg
+		// ("ant pack" bundles them into assets.pack for the .azw2, see ResourcePack.java) 
+		this.resources= ResourcePack.open(GameBoard.class, "assets.pack");
+		this.backgroundImage= this.loadImage("background.gif"); // any 600x800 image
+		this.elementImage= this.loadImage("checker.png");	// a circle in a 40x40 with transparent bg
 
-		// for now create empty images (we'll load them when we know which size we need)
-		this.backgroundPane= new KImageSnoop(null, "background");
-		this.checkerPane= new GameTile(null);
-		this.someLabel= new KLabel("Press u/d/r/l/c to move or use the 5-way.", KLabel.CENTER);
+		// The scene gets filled when we know our size (see onBoardResized())
+		this.scene= new Scene(128);
+		this.backgroundNode= -1;
+		this.checkerNode= -1;
+		this.labelText= "Press u/d/r/l/c to move or use the 5-way.";
 		
 		// just for the fun of it, use a different font for the label
-		Font ff= KindletUIResources.getInstance().getFont(KindletUIResources.KFontFamilyName.MONOSPACE, 21, KFontStyle.PLAIN, false);
-		this.someLabel.setFont(ff);
+		this.labelFont= KindletUIResources.getInstance().getFont(KindletUIResources.KFontFamilyName.MONOSPACE, 21, KFontStyle.PLAIN, false);
+		this.boardLayout.setStatusHeight(this.getFontMetrics(this.labelFont).getHeight() + 4);
 
-		// Add all th stuff in z-order: top items first, to bottom items last 
-		// (background naturally needs to go in last or it will cover everything else)
-		this.add(this.checkerPane);
-		this.add(this.someLabel);  
-		this.add(this.backgroundPane);
-
-		// We catch all keys and have no focus on any of the components 
-		// (to avoid surprises, all components should have setFocusable(false))
-		this.checkerPane.setFocusable(false);
-		this.backgroundPane.setFocusable(false);
-		
 		// Register (board Panel) for keyboard (focusable with KeyAdapter)
 		this.setFocusable(true);  // just doing this for clarification, it's true by default anyway
 		this.registerAsKeyboardListener();
@@ -128,20 +138,36 @@ public class GameBoard extends Container
 			this.removeKeyListener(this.keyListener2);
 			this.keyListener2= null;
 		}
+		
+		if (this.imageTask!=null) {
+			this.imageTask.cancel();
+			this.imageTask= null;
+		}
+		this.stalledImageTask= null;
+		this.workers= null;
+		
+		if (this.renderer!=null) {
+			this.renderer.setTarget(null);
+			this.renderer= null;
+		}
 
 		
-		// Remove all childs
-		this.removeAll();
+		// Remove the layout (no need to waste time on layout calls down from here)
+		this.setLayout(null);
+		
+		// (this flushes the scaled images it keeps for us)
+		this.boardLayout.destroy();
+		this.boardLayout= null;
+		this.layoutSize= null;
 		
 
 		// More deconstruct (aid garbage collection by cleaning up all references to other objects)
-		this.backgroundPane.setImage(null);
-		this.backgroundPane= null;
-		
-		this.checkerPane.destroy();
-		this.checkerPane= null;
+		// (this flushes the scaled images again, in case the layout dropped them earlier)
+		this.scene.destroy();
+		this.scene= null;
 
-		this.someLabel= null;
+		this.labelText= null;
+		this.labelFont= null;
 
 		
 		// Make sure you flush() and null images if you don't need them
@@ -150,6 +176,11 @@ public class GameBoard extends Container
 		
 		this.elementImage.flush();
 		this.elementImage= null;
+		
+		if (this.resources!=null) {
+			this.resources.destroy();
+			this.resources= null;
+		}
 
 		App.logit("GameBoard::destroy done");
 	}
@@ -163,81 +194,258 @@ public class GameBoard extends Container
 	public void doLayout()
 	{
 		App.logit("GameBoard::doLayout for " + this.getSize());
+		Trace.begin("GameBoard::doLayout");
+		PowerMonitor.wakeup("layout");
 		
-		// Note: important!! do *not* call super.doLayout() here
+		// Note: with a null layout you must *not* call super.doLayout() here
 		// 	see http://forums.kindlecentral.com/forums/thread.jspa?threadID=535&tstart=0 (item posted Mar 27, 2011 12:16 PM)
+		// 
+		// We have our own layout manager though, so super.doLayout() just hands over to 
+		// BoardLayout.layoutContainer().  It will only call boardResized() below when  
+		// the size actually changed.
+		super.doLayout();
 		
-		/* !!! nope, don't call super.doLayout() !!! */
+		Trace.end("GameBoard::doLayout");
+		App.logit("GameBoard::doLayout done");
+	}
+	
+	
+	
+	//
+	// the board layout has computed where things go for a new size (first sizing or  
+	// even orientation could have changed).  Rebuild the scene accordingly.  If we've 
+	// had this size before, the layout still has the scaled images for it (prepared).
+	//
+	private void onBoardResized(final Dimension thissize, Rectangle[] bounds, Image[] prepared)
+	{
+		App.logit("GameBoard::onBoardResized for " + thissize);
 		
+		// a new size (e.g. rotation) is something to work on, just like a key press
+		PowerMonitor.activity();
 		
-		// get size for arrangement
-		final Dimension thissize= this.getSize();
+		this.layoutSize= thissize;
 		
-		// this check is necessary (doLayout will be called often!)
-		if (this.layoutSize!=null && this.layoutSize.equals(thissize)) {
-			App.logit("GameBoard::doLayout early exit (same size)");
-			return;
+		Rectangle bg= bounds[BoardLayout.SLOT_BACKGROUND];
+		Rectangle pc= bounds[BoardLayout.SLOT_PIECE];
+		Rectangle st= bounds[BoardLayout.SLOT_STATUS];
+		
+		// (the old scaled images stay with the layout, see preparedDropped())
+		this.scene.clear();
+		
+		// Add all the stuff, nodes with a higher z go on top (images come later, see below)
+		this.backgroundNode= this.scene.addSprite(null, bg.x,bg.y, bg.width,bg.height, 0);
+		this.scene.addText(this.labelText, this.labelFont, Color.BLACK, st.x,st.y, st.width,st.height, 1);
+		
+		// until we have the image, the checker is just a black circle
+		this.checkerNode= this.scene.addShape(Scene.OVAL, Color.BLACK, pc.x,pc.y, pc.width,pc.height, 2);
+		
+		// just as a sample, a bit of decoration along the upper/lower borders 
+		// (this goes on top of everything else).
+		for (int i= 0; i<thissize.width-10; i+=15) {
+			this.scene.addShape(Scene.OVAL, Color.BLACK, i+2,10, 10,10, 3);
+			this.scene.addShape(Scene.RECT, Color.WHITE, i+2,st.y-15, 10,10, 3);
 		}
 		
+		if (this.imageTask!=null) {
+			this.imageTask.cancel();  // that size is history
+			this.imageTask= null;
+		}
 		
-		// Size was actually changed (first sizing or even orientation could have 
-		// changed), thus arrange our components
-		this.layoutSize= thissize;
+		// been here before, the images are ready
+		if (prepared!=null) {
+			App.logit("GameBoard::onBoardResized reusing images for " + thissize);
+			this.scene.setImage(this.backgroundNode, prepared[0]);
+			this.scene.setImage(this.checkerNode, prepared[1]);
+			this.repaintDirty();
+			return;
+		}
 		
-		Image image= null;
+		this.repaintDirty();
+		
+		// The geometry is in place, but scaling the images is much slower than that.  Leave 
+		// it to the worker thread (or, if its decode lane is full, to a later EDT event). 
+		final int piecewidth= pc.width;
+		final int pieceheight= pc.height;
+		final Workers.Task task= 
+			new Workers.Task() 
+			{
+			    protected void execute() 
+			    { 
+			    	GameBoard.this.prepareImages(thissize, piecewidth, pieceheight, this);
+			    }
+			};
+		this.imageTask= task;
+		this.scheduleImages(task);
+	}
+	
+	
+	//
+	// have the images scaled by the worker (or, if there's no room in its decode lane, on 
+	// the EDT).  
+	//
+	// Note: a task the worker had to give up on because of stop() gets run again after 
+	// start() by the worker itself.  On the EDT there's nobody to do that for us, so we 
+	// keep it in stalledImageTask and resume() schedules it again.
+	//
+	private void scheduleImages(final Workers.Task task)
+	{
+		if (this.workers!=null && this.workers.offer(Workers.DECODE, task)) {
+			return;
+		}
 		
-		// Make the background cover the whole size and request get a prescaled image to fit 
-		// (the prescale will speed up painting later) 
-		this.backgroundPane.setBounds(0,0, thissize.width,thissize.height);
-		image= this.backgroundImage.getScaledInstance(thissize.width, thissize.height, Image.SCALE_FAST);
-		GameBoard.waitForImage(image, this);  // trigger loading and make sure we have the whole thing
-		this.backgroundPane.setImage(image);
-
-		// For the sample we use a fixed size for the checker and just start in the middle. 
-		// (normally this would have to scale somehow to fit the background scaling)
-		// alternately don't set an image at all ... the GameTile will then just draw a circle
-		int checkersize= 50;
-		this.checkerPane.setBounds(thissize.width/2-checkersize/2,thissize.height/2-checkersize/2, checkersize,checkersize);
-		image= this.elementImage.getScaledInstance(checkersize, checkersize, Image.SCALE_SMOOTH);
-		GameBoard.waitForImage(image, this);  // trigger loading and make sure we have the whole thing
-		this.checkerPane.setImage(image);
+		App.logit("GameBoard::scheduleImages no worker, preparing images on the EDT");
+		Runnable runnable= 
+			new Runnable() 
+			{
+			    public void run() 
+			    { 
+			    	task.interrupted= false;
+			    	if (!task.isCancelled()) {
+			    		task.execute();
+			    	}
+			    	if (task.interrupted && !task.cancelled) {
+			    		App.logit("GameBoard::scheduleImages stopped, again after start()");
+			    		GameBoard.this.stalledImageTask= task;
+			    	}
+			    }
+			};
+		EventQueue.invokeLater(runnable);
+	}
+	
+	
+	//
+	// the app was started again (called by App.start(), any thread)
+	//
+	void resume()
+	{
+		Runnable runnable= 
+			new Runnable() 
+			{
+			    public void run() 
+			    { 
+			    	Workers.Task task= GameBoard.this.stalledImageTask;
+			    	GameBoard.this.stalledImageTask= null;
+			    	
+			    	// (unless a resize has made it history in the meantime)
+			    	if (task!=null && task==GameBoard.this.imageTask && !task.cancelled) {
+			    		GameBoard.this.scheduleImages(task);
+			    	}
+			    }
+			};
+		EventQueue.invokeLater(runnable);
+	}
+	
+	
+	
+	//
+	// load prescaled images to fit the given layout (the prescale will speed up painting later).  
+	// 
+	// Note: this usually runs on the worker thread, so don't touch the scene here.  If the task 
+	// gets cancelled half way we just quit (after a stop() the worker will run it again).
+	//
+	private void prepareImages(final Dimension thissize, int piecewidth, int pieceheight, Workers.Task task)
+	{
+		App.logit("GameBoard::prepareImages for " + thissize);
+		Trace.begin("GameBoard::prepareImages");
+		
+		// Make the background cover the whole size  
+		final Image background= this.backgroundImage.getScaledInstance(thissize.width, thissize.height, Image.SCALE_FAST);
+		GameBoard.waitForImage(background, this);  // trigger loading and make sure we have the whole thing
 
-		// Arrange the label at the bottom with its preferred height (pref. height will change depending on font) 
-		Dimension sz= this.someLabel.getPreferredSize();
-		this.someLabel.setBounds(0,thissize.height-sz.height, thissize.width,sz.height);
+		if (task.isCancelled()) {
+			App.logit("GameBoard::prepareImages early exit (cancelled)");
+			background.flush();
+			Trace.end("GameBoard::prepareImages");
+			return;
+		}
 		
-		App.logit("GameBoard::doLayout done");
+		// Alternately don't set an image at all ... the checker will then stay a circle
+		final Image checker= this.elementImage.getScaledInstance(piecewidth, pieceheight, Image.SCALE_SMOOTH);
+		GameBoard.waitForImage(checker, this);  // trigger loading and make sure we have the whole thing
+		
+		// back to the EDT to put them on screen
+		Runnable runnable= 
+			new Runnable() 
+			{
+			    public void run() 
+			    { 
+			    	GameBoard.this.installImages(thissize, background, checker);
+			    }
+			};
+		EventQueue.invokeLater(runnable);
+		
+		Trace.end("GameBoard::prepareImages");
+		App.logit("GameBoard::prepareImages done");
+	}
+	
+	
+	//
+	// put freshly scaled images into the scene (on the EDT)
+	//
+	private void installImages(Dimension thissize, Image background, Image checker)
+	{
+		App.logit("GameBoard::installImages for " + thissize);
+		PowerMonitor.wakeup("install");
+		
+		// we might have been resized again (or destroyed) while waiting for our turn
+		if (this.layoutSize==null || !this.layoutSize.equals(thissize)) {
+			App.logit("GameBoard::installImages early exit (stale size)");
+			background.flush();
+			checker.flush();
+			return;
+		}
+		
+		this.scene.setImage(this.backgroundNode, background);
+		this.scene.setImage(this.checkerNode, checker);
+		
+		// keep them for the next time we get this size (e.g. rotating back)
+		this.boardLayout.setPrepared(thissize, new Image[] { background, checker });
+		
+		this.repaintDirty();
+		
+		App.logit("GameBoard::installImages done");
 	}
 	
 	
 	
 	//
-	// This is just a simple paint routine to show how user painting is done.
+	// This is the one and only paint routine for the whole board.
 	// 
-	// Note: Technically we could paint anything there. In fact we could do away with the KIimage  
-	// (background) and GameTile (checker) child components and instead paint the whole board and all 
-	// into the graphics context here via g2d.drawImage() calls.
+	// Note: Technically we could use child components for the background, the checker, etc. 
+	// and let AWT paint them.  That's fine for a handful of elements, but every component 
+	// costs a z-order traversal and a paint() call of its own.  The scene instead draws all 
+	// nodes in one pass and skips those which are outside the clipping area.
 	//
 	public void paint(Graphics graphics)
 	{
 		App.logit("GameBoard::paint in clipBounds " + graphics.getClipBounds());
+		Trace.begin("GameBoard::paint");
+		PowerMonitor.wakeup("paint");
 		
-		super.paint(graphics);  // this will paint all the children (i.e. the background-kimage, the checker-kimage and the label)
-
+		// with a render thread, the frame is ready and we just copy it (unless there isn't 
+		// one for our size yet, e.g. right after the first layout)
+		if (this.renderer==null || !this.renderer.blit(graphics, this.getSize())) {
+			this.scene.render(graphics);
+		}
 		
-		Graphics2D g2d= (Graphics2D)graphics;	// we prefer G2D because it offers a few more features
-		g2d.setColor(Color.BLACK);
-
-		// just as a sample, draw a bit of decoration along the upper/lower borders 
-		// (this drawing goes on top of everything else).
-		Dimension d= this.getSize();
-		for (int i= 0; i<d.width-10; i+=15) {
-			g2d.fillOval(i+2,10, 10,10);
+		Trace.end("GameBoard::paint");
+	}
+	
+	
+	//
+	// ask for a repaint of what has changed in the scene (if anything).  With a render 
+	// thread, it gets a snapshot to compose and asks for the repaint itself when it's done.
+	//
+	private void repaintDirty()
+	{
+		Rectangle r= this.scene.takeDirtyArea();
+		if (r==null) {
+			return;
 		}
-		Rectangle rl= this.someLabel.getBounds();
-		g2d.setColor(Color.WHITE);
-		for (int i= 0; i<d.width-10; i+=15) {
-			g2d.fillRect(i+2,rl.y-15, 10,10);
+		
+		// (the renderer says no if there's nothing it can do, e.g. the board is empty)
+		if (this.renderer==null || !this.renderer.request(this.scene.snapshot(), this.getSize(), r)) {
+			this.repaint(r.x,r.y, r.width,r.height);
 		}
 	}
 
@@ -251,41 +459,70 @@ public class GameBoard extends Container
 	{
 		App.logit("GameBoard::moveElement " + direction);
 
-		// moving a lightweight component around on the board is a simple way of leaving it 
-		// to the Kindle framework to figure out which areas need to redraw.  
-		//
-		// Below, when moving the checker, the Kindle will send a redraw to the background 
-		// (using a clipping area of where the checker was). It will then do the same for 
-		// the new position and will then paint the checker on top. (look for KImageSnoop 
-		// messages in the logging output to see how it works.  Also don't miss the 
-		// --redrawhightlights option in the simulator.)
+		// moving a node around in the scene marks where it was and where it is now as 
+		// dirty.  We then only ask for a repaint of that area, and the Kindle will call our 
+		// paint() with a clipping area covering the old and the new position (the scene 
+		// skips everything outside of it).  Don't miss the --redrawhightlights option in 
+		// the simulator to see it.
+		
+		if (this.checkerNode<0) {
+			App.logit("GameBoard::moveElement early exit (no layout yet)");
+			return;
+		}
 
-		final Rectangle elbo= this.checkerPane.getBounds();
+		final Rectangle elbo= this.scene.getBounds(this.checkerNode);
 		final Dimension thissize= this.getSize();
 		
 		switch (direction) {
 			case 'C': 
-				this.checkerPane.setLocation(thissize.width/2-elbo.width/2, thissize.height/2-elbo.height/2); 
+				this.scene.setLocation(this.checkerNode, thissize.width/2-elbo.width/2, thissize.height/2-elbo.height/2); 
 				break;
 				
 			case 'U': 
-				this.checkerPane.setLocation(elbo.x, elbo.y-elbo.height); 
+				this.scene.setLocation(this.checkerNode, elbo.x, elbo.y-elbo.height); 
 				break;
 				
 			case 'D': 
-				this.checkerPane.setLocation(elbo.x, elbo.y+elbo.height); 
+				this.scene.setLocation(this.checkerNode, elbo.x, elbo.y+elbo.height); 
 				break;
 				
 			case 'L': 
-				this.checkerPane.setLocation(elbo.x-elbo.width, elbo.y); 
+				this.scene.setLocation(this.checkerNode, elbo.x-elbo.width, elbo.y); 
 				break;
 				
 			case 'R': 
-				this.checkerPane.setLocation(elbo.x+elbo.width, elbo.y); 
+				this.scene.setLocation(this.checkerNode, elbo.x+elbo.width, elbo.y); 
 				break;
 		}
 		
-		App.logit("GameBoard::moveElement done (from= " + elbo + " to " + this.checkerPane.getBounds() + ")");
+		this.repaintDirty();
+		
+		App.logit("GameBoard::moveElement done (from= " + elbo + " to " + this.scene.getBounds(this.checkerNode) + ")");
+	}
+	
+	
+	//
+	// layout handler
+	// 
+	private void registerAsLayoutListener()
+	{
+		this.boardLayout.setListener(
+				new BoardLayout.Listener() 
+					{
+						public void boardResized(Container parent, Dimension size, Rectangle[] bounds, Object prepared) 
+						{ 
+							GameBoard.this.onBoardResized(size, bounds, (Image[])prepared); 
+						}
+						
+						public void preparedDropped(Dimension size, Object prepared) 
+						{ 
+							// scaled images for a size we haven't seen in a while
+							Image[] images= (Image[])prepared;
+							for (int i= 0; i<images.length; i++) {
+								images[i].flush();
+							}
+						}
+					});
 	}
 	
 	
@@ -321,6 +558,9 @@ public class GameBoard extends Container
 		int keycode= event.getKeyCode();
 		
 		App.logit("GameBoard::onKeyboard" + event + " *************");
+		Trace.begin("GameBoard::onKeyboard");
+		PowerMonitor.userAction();
+		PowerMonitor.wakeup("input");
 
 		// 
 		// deal with action keys (here we just turn 5-ways into actual letters) 
@@ -362,17 +602,35 @@ public class GameBoard extends Container
 				break;
 		}
 		
+		Trace.end("GameBoard::onKeyboard");
 		App.logit("GameBoard::onKeyboard done");
 	}
 
 	
 
+	//
+	// load a base image from the resource pack (or, when running without a pack, e.g. from 
+	// the eclipse output folder, as a plain resource next to this class)
+	// 
+	private Image loadImage(String name)
+	{
+		if (this.resources!=null && this.resources.contains(name)) {
+			return this.resources.createImage(name);
+		}
+		
+		App.logit("GameBoard::loadImage " + name + " not packed, using getResource()");
+		return Toolkit.getDefaultToolkit().createImage(getClass().getResource(name));
+	}
+	
+	
+	
 	//
 	// generic helper function to wrap a waitForImage call
 	// 
 	public static void waitForImage(Image image, Component component)
 	{
 		App.logit("GameBoard::waitforimage");
+		Trace.begin("GameBoard::waitForImage");
 		
 		java.awt.MediaTracker media_tracker = new java.awt.MediaTracker(component);
 
@@ -390,107 +648,7 @@ public class GameBoard extends Container
 			App.logit("GameBoard::waitforimage Image loading interrupted : " + e);
 		}
 		
+		Trace.end("GameBoard::waitForImage");
 		App.logit("GameBoard::waitforimage done");
 	}
-	
-	
-	
-
-	/////////////////////////////////////////////////////////////////////////////////////////
-	//
-	//  Helper class for a game board element.
-	// 
-	//  The checker comes in two flavors, either with self-drawing an image or with  
-	//  using draw primitives, depending on if an image is passed on the constructor or 
-	//  if null is passed.
-	//
-	/////////////////////////////////////////////////////////////////////////////////////////
-	
-	private class GameTile extends Container
-	{
-		private static final long serialVersionUID= 1L;
-		
-		Image image;
-		
-		public GameTile(Image image)
-		{
-			this.setImage(image);
-		}
-
-		public void destroy()
-		{
-			if (this.image!=null) {
-				this.image.flush();
-				this.image= null;
-			}
-		}
-		
-		
-		public void setImage(Image image)
-		{
-			if (this.image!=null) {
-				this.image.flush();
-				this.image= null;
-			}
-			
-			this.image= image;
-		}
-		
-		
-		public void paint(Graphics graphics)
-		{
-			App.logit("GameTile::paint in clipBounds " + graphics.getClipBounds());
-
-			super.paint(graphics);  // this will paint all the children (if any)
-			
-			Graphics2D g2d= (Graphics2D)graphics;	// we prefer G2D because it offers a few more features
-			
-			// if we have an image draw it, otherwise just use g2d to draw a black circle
-			if (this.image!=null) {
-				// alternately we could draw the image here
-				g2d.drawImage(this.image, 0,0, null);
-			}
-			else {
-				Dimension d= this.getSize();
-				g2d.setColor(Color.BLACK);
-				g2d.fillOval(2,2,d.width-4-1,d.height-4-1);
-			}
-		}
-	}
-
-	
-	
-	
-	
-	
-	/////////////////////////////////////////////////////////////////////////////////////////
-	//
-	//  Helper class like KImage.  
-	// 
-	//  Purpose for the override is to show where and when screen  updates redraw
-	//
-	/////////////////////////////////////////////////////////////////////////////////////////
-
-	private class KImageSnoop extends KImage
-	{
-		private static final long serialVersionUID = 1L;
-
-		String nameToLog;
-		
-		
-		public KImageSnoop(Image image, String name_to_log) 
-		{
-			super(image);
-			this.nameToLog= name_to_log;
-		}
-
-		
-		public void paint(Graphics graphics) 
-		{
-			App.logit("KImageSnoop::paint for " + this.nameToLog + " in clipBounds " + graphics.getClipBounds());
-			super.paint(graphics);
-		}
-	}
 }
-	
-	
@@ -0,0 +1,397 @@
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+//  Kindle-ConceptDemo
+//
+//  Source code (C) Copyright 2010 Markus Schmidt (m.schmidt@emtec.com)
+//  Published under MIT License (http://en.wikipedia.org/wiki/MIT_License)
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+
+
+package com.nowhere.sample;
+
+import java.lang.reflect.Method;
+import java.util.Enumeration;
+import java.util.Hashtable;
+
+
+
+
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+//  Idle power accounting
+//
+//  On an e-ink device battery life is a performance metric: a kindlet which does nothing
+//  while the user is reading the screen should cost nothing.  This keeps track of
+//
+//  - wakeups: every time one of our threads starts doing something (a paint, a key,
+//    a task on the worker, a frame on the render thread) it calls wakeup(source).
+//    Wakeups while the app is idle (no user action or resize for IDLE_AFTER_MILLIS)
+//    are counted separately, ideally there are none.
+//  - CPU time per thread between start() and stop() (beginWindow()/endWindow()), read
+//    from the ThreadMXBean.  The Kindle's VM (CDC) doesn't have java.lang.management,
+//    so we look it up by reflection: on the simulator you get the numbers, on the device
+//    the summary only has the wakeups.
+//
+//  endWindow() returns a summary to log(): wakeups per minute (by source), CPU ms per
+//  thread and CPU ms per user action (our threads only, see Summary).  The figures of the last window stay available through the
+//  getters until the next beginWindow(), so the stress harness can check that there
+//  were no idle wakeups (see LifecycleStress.java).
+//
+//  Idle mode (idleMode): while idle, background work that nobody waits for (the
+//  prefetch lane of Workers) is held back until the user does something again, so
+//  nothing of ours is scheduled while nobody's looking.  There are no timers, and all
+//  our threads sleep in wait() without a timeout when they have nothing to do.  When
+//  the user comes back, activity() tells the Listener (the worker pool) to pick up what
+//  was held back.
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+public class PowerMonitor
+{
+	// hold back prefetching while idle
+	public static boolean idleMode= true;
+
+	// no user action for this long means idle
+	static final long IDLE_AFTER_MILLIS= 3000;
+
+
+	//
+	// listener for the end of an idle period
+	//
+	public interface Listener
+	{
+		// called (on the thread reporting the activity, usually the EDT) when the user
+		// does something after having been idle
+		void idleEnded();
+	}
+
+
+	//
+	// session state (all guarded by the class lock)
+	//
+	private static long lastActivity= System.currentTimeMillis();
+	private static long windowStart;
+	private static int userActions;
+	private static int wakeupCount;
+	private static int idleWakeupCount;
+	private static long cpuMillis= -1;	// last window, -1 if not available
+	private static Listener listener;
+	private static Hashtable wakeups= new Hashtable();		// source -> int[1]
+	private static Hashtable idleWakeups= new Hashtable();	// source -> int[1]
+	private static Hashtable cpuAtStart= new Hashtable();	// Long thread id -> Long cpu ns
+
+
+
+	/*****************************************************************************************
+	* events
+	*****************************************************************************************/
+
+	public static synchronized void setListener(Listener listener)
+	{
+		PowerMonitor.listener= listener;
+	}
+
+	// remove the listener, if it's still the given one
+	public static synchronized void removeListener(Listener listener)
+	{
+		if (PowerMonitor.listener==listener) {
+			PowerMonitor.listener= null;
+		}
+	}
+
+
+	//
+	// the user (or the framework, e.g. a rotation) made us do something
+	//
+	public static void activity()
+	{
+		Listener wake;
+		synchronized (PowerMonitor.class) {
+			wake= PowerMonitor.isIdle() ? PowerMonitor.listener : null;
+			PowerMonitor.lastActivity= System.currentTimeMillis();
+		}
+
+		// outside our lock, the listener has locks of its own (and calls isIdle() with them)
+		if (wake!=null) {
+			wake.idleEnded();
+		}
+	}
+
+
+	//
+	// the user pressed a key
+	//
+	public static void userAction()
+	{
+		synchronized (PowerMonitor.class) {
+			PowerMonitor.userActions++;
+		}
+		PowerMonitor.activity();
+	}
+
+
+	//
+	// one of our threads woke up to do some work
+	//
+	public static synchronized void wakeup(String source)
+	{
+		PowerMonitor.count(PowerMonitor.wakeups, source);
+		PowerMonitor.wakeupCount++;
+		if (PowerMonitor.isIdle()) {
+			PowerMonitor.count(PowerMonitor.idleWakeups, source);
+			PowerMonitor.idleWakeupCount++;
+		}
+	}
+
+
+	public static synchronized boolean isIdle()
+	{
+		return System.currentTimeMillis()-PowerMonitor.lastActivity > PowerMonitor.IDLE_AFTER_MILLIS;
+	}
+
+
+
+	/*****************************************************************************************
+	* start()/stop() windows
+	*****************************************************************************************/
+
+	//
+	// start counting (call from start())
+	//
+	public static synchronized void beginWindow()
+	{
+		PowerMonitor.windowStart= System.currentTimeMillis();
+		PowerMonitor.userActions= 0;
+		PowerMonitor.wakeupCount= 0;
+		PowerMonitor.idleWakeupCount= 0;
+		PowerMonitor.cpuMillis= -1;
+		PowerMonitor.wakeups.clear();
+		PowerMonitor.idleWakeups.clear();
+		PowerMonitor.cpuAtStart= PowerMonitor.sampleCpu(null);
+		PowerMonitor.lastActivity= System.currentTimeMillis();	 // (the app was just started)
+	}
+
+
+	//
+	// close the window (call from stop(), before the threads get ended).  This only takes
+	// the numbers, log() the summary it returns once you're out of any locks.  Returns null 
+	// if there was no window (stop() without start()).
+	//
+	public static synchronized Summary endWindow()
+	{
+		if (PowerMonitor.windowStart==0) {
+			return null;
+		}
+
+		Summary summary= new Summary();
+		summary.millis= Math.max(1, System.currentTimeMillis()-PowerMonitor.windowStart);
+		summary.userActions= PowerMonitor.userActions;
+		summary.wakeupCount= PowerMonitor.wakeupCount;
+		summary.idleWakeupCount= PowerMonitor.idleWakeupCount;
+		summary.wakeups= PowerMonitor.wakeups;
+		summary.idleWakeups= PowerMonitor.idleWakeups;
+		summary.cpuBefore= PowerMonitor.cpuAtStart;
+		summary.names= new Hashtable();
+		summary.cpuAfter= PowerMonitor.sampleCpu(summary.names);
+
+		// (the counters keep counting until the next beginWindow(), but not into the summary)
+		PowerMonitor.wakeups= new Hashtable();
+		PowerMonitor.idleWakeups= new Hashtable();
+		PowerMonitor.windowStart= 0;
+
+		return summary;
+	}
+
+
+
+	/////////////////////////////////////////////////////////////////////////////////////////
+	//
+	//  What one start() -> stop() window cost (see endWindow())
+	//
+	//  Only our own threads count towards the cpu total: the EDT, the worker, the render 
+	//  thread and whatever else was started during the window.  Everything else in the VM 
+	//  (the simulator, the JVM's housekeeping) is listed, but not counted.
+	//
+	/////////////////////////////////////////////////////////////////////////////////////////
+	public static class Summary
+	{
+		long millis;
+		int userActions;
+		int wakeupCount;
+		int idleWakeupCount;
+		Hashtable wakeups;		// source -> int[1]
+		Hashtable idleWakeups;	// source -> int[1]
+		Hashtable cpuBefore;	// Long thread id -> Long cpu ns (null if not available)
+		Hashtable cpuAfter;
+		Hashtable names;		// Long thread id -> thread name
+
+		//
+		// log the summary (and keep the cpu total for getCpuMillis())
+		//
+		public void log()
+		{
+			double minutes= this.millis/60000.0;
+
+			StringBuffer sb= new StringBuffer("PowerMonitor::session summary\n");
+			sb.append("  window: ").append(this.millis).append("ms, user actions: ").append(this.userActions).append("\n");
+
+			PowerMonitor.append(sb, "  wakeups/min: ", this.wakeups, minutes);
+			PowerMonitor.append(sb, "  idle wakeups/min: ", this.idleWakeups, minutes);
+
+			if (this.cpuBefore==null || this.cpuAfter==null) {
+				sb.append("  cpu: not available on this VM\n");
+			}
+			else {
+				long ours= 0;
+				StringBuffer others= new StringBuffer();
+				sb.append("  cpu ms:");
+				for (Enumeration e= this.cpuAfter.keys(); e.hasMoreElements(); ) {
+					Long id= (Long)e.nextElement();
+					Long before= (Long)this.cpuBefore.get(id);
+					long delta= ((Long)this.cpuAfter.get(id)).longValue() - (before!=null ? before.longValue() : 0);
+					if (delta<=0) {
+						continue;
+					}
+					String name= (String)this.names.get(id);
+					if (before==null || PowerMonitor.isOurThread(name)) {
+						ours+= delta;
+						sb.append(" ").append(name).append("=").append(delta/1000000);
+					}
+					else {
+						others.append(" ").append(name).append("=").append(delta/1000000);
+					}
+				}
+				sb.append("\n  cpu ms total: ").append(ours/1000000);
+				if (this.userActions>0) {
+					sb.append(", per user action: ").append(ours/1000000/this.userActions);
+				}
+				sb.append("\n  other threads (not counted):").append(others).append("\n");
+
+				synchronized (PowerMonitor.class) {
+					PowerMonitor.cpuMillis= ours/1000000;
+				}
+			}
+
+			sb.append("  (").append(this.wakeupCount).append(" wakeups, ").append(this.idleWakeupCount).append(" while idle)");
+			if (this.idleWakeupCount>0) {
+				sb.append("\n  WARNING: something woke up while the user was idle");
+			}
+
+			App.logit(sb.toString());
+		}
+	}
+
+
+
+	/*****************************************************************************************
+	* figures of the current (or last) window
+	*****************************************************************************************/
+
+	public static synchronized int getWakeupCount()
+	{
+		return PowerMonitor.wakeupCount;
+	}
+
+	public static synchronized int getIdleWakeupCount()
+	{
+		return PowerMonitor.idleWakeupCount;
+	}
+
+	public static synchronized int getUserActions()
+	{
+		return PowerMonitor.userActions;
+	}
+
+	// cpu ms of our threads in the last window (-1 if the VM can't tell us), set by log()
+	public static synchronized long getCpuMillis()
+	{
+		return PowerMonitor.cpuMillis;
+	}
+
+
+
+	/*****************************************************************************************
+	* helpers
+	*****************************************************************************************/
+
+	private static void count(Hashtable counts, String source)
+	{
+		int[] n= (int[])counts.get(source);
+		if (n==null) {
+			n= new int[1];
+			counts.put(source, n);
+		}
+		n[0]++;
+	}
+
+
+	// the threads which are doing our work (besides any started during the window)
+	static boolean isOurThread(String name)
+	{
+		return name!=null && (name.startsWith("AWT-EventQueue") || name.equals("Workers") || name.equals("FrameRenderer"));
+	}
+
+
+	// append "label source=rate ... total=rate"
+	private static void append(StringBuffer sb, String label, Hashtable counts, double minutes)
+	{
+		int total= 0;
+		sb.append(label);
+		for (Enumeration e= counts.keys(); e.hasMoreElements(); ) {
+			String source= (String)e.nextElement();
+			int n= ((int[])counts.get(source))[0];
+			total+= n;
+			sb.append(source).append("=").append(Math.round(n/minutes*10)/10.0).append(" ");
+		}
+		sb.append("total=").append(Math.round(total/minutes*10)/10.0).append("\n");
+	}
+
+
+	//
+	// cpu time (ns) of all live threads by thread id, null if the VM can't tell us.
+	// names (if not null) gets the thread names.
+	//
+	private static Hashtable sampleCpu(Hashtable names)
+	{
+		try {
+			Class factory= Class.forName("java.lang.management.ManagementFactory");
+			Class beanclass= Class.forName("java.lang.management.ThreadMXBean");
+			Class infoclass= Class.forName("java.lang.management.ThreadInfo");
+
+			Object bean= factory.getMethod("getThreadMXBean", new Class[0]).invoke(null, new Object[0]);
+
+			Boolean supported= (Boolean)beanclass.getMethod("isThreadCpuTimeSupported", new Class[0]).invoke(bean, new Object[0]);
+			if (!supported.booleanValue()) {
+				return null;
+			}
+			Boolean enabled= (Boolean)beanclass.getMethod("isThreadCpuTimeEnabled", new Class[0]).invoke(bean, new Object[0]);
+			if (!enabled.booleanValue()) {
+				beanclass.getMethod("setThreadCpuTimeEnabled", new Class[] { Boolean.TYPE }).invoke(bean, new Object[] { Boolean.TRUE });
+			}
+
+			long[] ids= (long[])beanclass.getMethod("getAllThreadIds", new Class[0]).invoke(bean, new Object[0]);
+			Method cputime= beanclass.getMethod("getThreadCpuTime", new Class[] { Long.TYPE });
+			Method threadinfo= beanclass.getMethod("getThreadInfo", new Class[] { Long.TYPE });
+			Method threadname= infoclass.getMethod("getThreadName", new Class[0]);
+
+			Hashtable cpu= new Hashtable();
+			for (int i= 0; i<ids.length; i++) {
+				Long id= new Long(ids[i]);
+				long ns= ((Long)cputime.invoke(bean, new Object[] { id })).longValue();
+				if (ns<0) {
+					continue;	// thread died in the meantime
+				}
+				cpu.put(id, new Long(ns));
+				if (names!=null) {
+					Object info= threadinfo.invoke(bean, new Object[] { id });
+					names.put(id, (info!=null) ? threadname.invoke(info, new Object[0]) : "thread-" + id);
+				}
+			}
+			return cpu;
+		}
+		catch (Exception e) {
+			// no java.lang.management on this VM (e.g. on the device)
+			return null;
+		}
+	}
+}
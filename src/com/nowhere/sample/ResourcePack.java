@@ -0,0 +1,189 @@
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+//  Kindle-ConceptDemo
+//
+//  Source code (C) Copyright 2010 Markus Schmidt (m.schmidt@emtec.com)
+//  Published under MIT License (http://en.wikipedia.org/wiki/MIT_License)
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+
+
+package com.nowhere.sample;
+
+import java.awt.Image;
+import java.awt.Toolkit;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Hashtable;
+
+
+
+
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+//  An indexed pack of resources (images)
+//
+//  Looking up every asset with getClass().getResource() means a search through the jar
+//  in the .azw2 and inflating a compressed entry per asset.  Instead, "ant pack" bundles
+//  all images into one file (tools/.../PackBuilder.java), which the jar task stores
+//  without compression.  At runtime we read that entry in one go and hand out slices of
+//  the same byte array to the image decoders (no copies, no inflation, one lookup).
+//
+//  Layout of the pack (big endian, as written by DataOutputStream):
+//
+//  	int    magic ("KPAK")
+//  	int    version
+//  	int    total length of the pack in bytes
+//  	int    entry count
+//  	entry count times:
+//  		UTF    name (e.g. "background.gif")
+//  		UTF    format (e.g. "gif")
+//  		int    offset of the data (from the start of the pack)
+//  		int    length of the data
+//  	data of all entries
+//
+//  Note: the Kindle's VM (CDC/PBP) has no java.nio, and the pack lives inside the jar
+//  anyway, so there is nothing to map.  A stored entry read into one array is as close
+//  as we get.
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+public class ResourcePack
+{
+	static final int MAGIC= 0x4B50414B;	 // "KPAK"
+	static final int VERSION= 1;
+	static final int FIXED_HEADER_SIZE= 16;	// magic, version, length, count
+
+
+	//
+	// an entry of the index
+	//
+	static class Entry
+	{
+		String format;
+		int offset;
+		int length;
+	}
+
+
+	//
+	// pack members
+	//
+	byte[] data;
+	Hashtable entries= new Hashtable();	  // name -> Entry
+
+
+
+	//
+	// read the pack resource next to the given class.  returns null if there is no such
+	// resource (e.g. when running from the eclipse output folder without "ant pack")
+	//
+	public static ResourcePack open(Class anchor, String name)
+	{
+		App.logit("ResourcePack::open " + name);
+		Trace.begin("ResourcePack::open");
+
+		ResourcePack pack= null;
+
+		InputStream in= anchor.getResourceAsStream(name);
+		if (in!=null) {
+			try {
+				pack= new ResourcePack();
+				pack.read(new DataInputStream(in));
+			}
+			catch (IOException e) {
+				App.logit("ResourcePack::open failed : " + e);
+				pack= null;
+			}
+			finally {
+				try {
+					in.close();
+				}
+				catch (IOException e) {
+					// nothing we can do about it
+				}
+			}
+		}
+
+		Trace.end("ResourcePack::open");
+		App.logit("ResourcePack::open done (" + (pack!=null ? pack.entries.size() + " entries" : "no pack") + ")");
+
+		return pack;
+	}
+
+
+	//
+	// destructor (see GameBoard.destroy())
+	//
+	public void destroy()
+	{
+		this.entries.clear();
+		this.data= null;
+	}
+
+
+
+	// check if the pack has an entry with the given name
+	public boolean contains(String name)
+	{
+		return this.entries.containsKey(name);
+	}
+
+
+	//
+	// create an image from a pack entry (the decoder works directly on our array).
+	// returns null if there is no such entry.
+	//
+	public Image createImage(String name)
+	{
+		Entry entry= (Entry)this.entries.get(name);
+		if (entry==null) {
+			return null;
+		}
+
+		return Toolkit.getDefaultToolkit().createImage(this.data, entry.offset, entry.length);
+	}
+
+
+
+	//
+	// read the whole pack into one array and parse the index
+	//
+	private void read(DataInputStream in) throws IOException
+	{
+		int magic= in.readInt();
+		int version= in.readInt();
+		int length= in.readInt();
+		int count= in.readInt();
+
+		if (magic!=ResourcePack.MAGIC || version!=ResourcePack.VERSION) {
+			throw new IOException("not a resource pack (or wrong version)");
+		}
+		if (length<ResourcePack.FIXED_HEADER_SIZE || count<0) {
+			throw new IOException("corrupt resource pack header");
+		}
+
+		// one allocation, one read for everything (the fixed header is already consumed
+		// but we keep the offsets relative to the start of the pack)
+		this.data= new byte[length];
+		in.readFully(this.data, ResourcePack.FIXED_HEADER_SIZE, length-ResourcePack.FIXED_HEADER_SIZE);
+
+		DataInputStream index= new DataInputStream(
+				new ByteArrayInputStream(this.data, ResourcePack.FIXED_HEADER_SIZE, length-ResourcePack.FIXED_HEADER_SIZE));
+
+		for (int i= 0; i<count; i++) {
+			String name= index.readUTF();
+			Entry entry= new Entry();
+			entry.format= index.readUTF();
+			entry.offset= index.readInt();
+			entry.length= index.readInt();
+
+			if (entry.offset<0 || entry.length<0 || entry.offset>length-entry.length) {
+				throw new IOException("corrupt resource pack entry " + name);
+			}
+
+			this.entries.put(name, entry);
+		}
+	}
+}
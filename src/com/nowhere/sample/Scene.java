@@ -0,0 +1,448 @@
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+//  Kindle-ConceptDemo
+//
+//  Source code (C) Copyright 2010 Markus Schmidt (m.schmidt@emtec.com)
+//  Published under MIT License (http://en.wikipedia.org/wiki/MIT_License)
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+
+
+package com.nowhere.sample;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Image;
+import java.awt.Rectangle;
+
+
+
+
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+//  A tiny retained mode scene graph
+//
+//  AWT child components are fine for a handful of elements, but every one of them is
+//  a full Component (z-order traversal, bounds, a paint() call with its own clip...).
+//  For a board with 64 cells and dozens of pieces we'd rather paint everything from
+//  one paint() call.  The scene keeps its nodes in flat arrays (one entry per node,
+//  a node is just its index) and draws them in z-order into a Graphics, skipping any
+//  node outside the clip area.
+//
+//  Node kinds:
+//  - SPRITE: an image (drawn at its node position, nothing is drawn while it's null)
+//  - OVAL, RECT: a filled shape in the node color
+//  - TEXT: a string in the node font and color, centered in the node bounds
+//
+//  Every change marks the node dirty.  takeDirtyArea() returns the area which needs a
+//  repaint (old and new bounds of all nodes changed since the last call), so moving
+//  a piece only redraws the two spots it touched.
+//
+//  Note: not thread safe, only use it from one thread (the EDT).  To draw on another
+//  thread, hand it a snapshot() and don't change that one anymore.
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+public class Scene
+{
+	// node kinds
+	public static final int SPRITE= 1;
+	public static final int OVAL= 2;
+	public static final int RECT= 3;
+	public static final int TEXT= 4;
+
+	// node flags
+	static final int VISIBLE= 1;
+	static final int DIRTY= 2;
+
+
+	//
+	// node arrays (index is the node id)
+	//
+	int count;
+	int[] kind;
+	int[] x;
+	int[] y;
+	int[] w;
+	int[] h;
+	int[] z;
+	int[] flags;
+	Image[] image;
+	Color[] color;
+	String[] text;
+	Font[] font;
+
+	// drawing order (node ids sorted by z, then by id)
+	int[] order;
+	boolean orderValid;
+
+	// area which needs a repaint because of removed/moved nodes
+	Rectangle dirtyArea;
+
+
+
+	//
+	// constructor
+	//
+	public Scene(int capacity)
+	{
+		this.allocate(Math.max(capacity, 4));
+	}
+
+
+	//
+	// destructor (flush all images and aid garbage collection)
+	//
+	public void destroy()
+	{
+		for (int i= 0; i<this.count; i++) {
+			if (this.image[i]!=null) {
+				this.image[i].flush();
+			}
+		}
+		this.clear();
+	}
+
+
+	//
+	// remove all nodes (the area they covered becomes dirty)
+	//
+	public void clear()
+	{
+		for (int i= 0; i<this.count; i++) {
+			this.addDirty(i);
+			this.image[i]= null;
+			this.color[i]= null;
+			this.text[i]= null;
+			this.font[i]= null;
+		}
+		this.count= 0;
+		this.orderValid= false;
+	}
+
+
+	public int size()
+	{
+		return this.count;
+	}
+
+
+	//
+	// a copy of the scene as it is now (without the dirty state)
+	//
+	public Scene snapshot()
+	{
+		Scene copy= new Scene(this.count);
+		int n= this.count;
+
+		copy.count= n;
+		System.arraycopy(this.kind, 0, copy.kind, 0, n);
+		System.arraycopy(this.x, 0, copy.x, 0, n);
+		System.arraycopy(this.y, 0, copy.y, 0, n);
+		System.arraycopy(this.w, 0, copy.w, 0, n);
+		System.arraycopy(this.h, 0, copy.h, 0, n);
+		System.arraycopy(this.z, 0, copy.z, 0, n);
+		System.arraycopy(this.flags, 0, copy.flags, 0, n);
+		System.arraycopy(this.image, 0, copy.image, 0, n);
+		System.arraycopy(this.color, 0, copy.color, 0, n);
+		System.arraycopy(this.text, 0, copy.text, 0, n);
+		System.arraycopy(this.font, 0, copy.font, 0, n);
+
+		if (this.orderValid) {
+			System.arraycopy(this.order, 0, copy.order, 0, n);
+			copy.orderValid= true;
+		}
+
+		return copy;
+	}
+
+
+
+	/*****************************************************************************************
+	* building the scene
+	*****************************************************************************************/
+
+	public int addSprite(Image image, int x, int y, int w, int h, int z)
+	{
+		int node= this.add(Scene.SPRITE, x,y, w,h, z);
+		this.image[node]= image;
+		return node;
+	}
+
+	public int addShape(int kind, Color color, int x, int y, int w, int h, int z)
+	{
+		int node= this.add(kind, x,y, w,h, z);
+		this.color[node]= color;
+		return node;
+	}
+
+	public int addText(String text, Font font, Color color, int x, int y, int w, int h, int z)
+	{
+		int node= this.add(Scene.TEXT, x,y, w,h, z);
+		this.text[node]= text;
+		this.font[node]= font;
+		this.color[node]= color;
+		return node;
+	}
+
+
+
+	/*****************************************************************************************
+	* changing nodes
+	*****************************************************************************************/
+
+	public void setLocation(int node, int x, int y)
+	{
+		this.addDirty(node);
+		this.x[node]= x;
+		this.y[node]= y;
+		this.flags[node]|= Scene.DIRTY;
+	}
+
+	public void setBounds(int node, int x, int y, int w, int h)
+	{
+		this.addDirty(node);
+		this.x[node]= x;
+		this.y[node]= y;
+		this.w[node]= w;
+		this.h[node]= h;
+		this.flags[node]|= Scene.DIRTY;
+	}
+
+	public void setZ(int node, int z)
+	{
+		this.z[node]= z;
+		this.orderValid= false;
+		this.flags[node]|= Scene.DIRTY;
+	}
+
+	public void setVisible(int node, boolean yesno)
+	{
+		this.addDirty(node);
+		if (yesno) {
+			this.flags[node]|= Scene.VISIBLE;
+		}
+		else {
+			this.flags[node]&= ~Scene.VISIBLE;
+		}
+		this.flags[node]|= Scene.DIRTY;
+	}
+
+	// set the image of a node, this turns it into a sprite (the previous image is not flushed)
+	public void setImage(int node, Image image)
+	{
+		this.kind[node]= Scene.SPRITE;
+		this.image[node]= image;
+		this.flags[node]|= Scene.DIRTY;
+	}
+
+	public void setText(int node, String text)
+	{
+		this.text[node]= text;
+		this.flags[node]|= Scene.DIRTY;
+	}
+
+
+	public Image getImage(int node)
+	{
+		return this.image[node];
+	}
+
+	public Rectangle getBounds(int node)
+	{
+		return new Rectangle(this.x[node],this.y[node], this.w[node],this.h[node]);
+	}
+
+
+
+	/*****************************************************************************************
+	* rendering
+	*****************************************************************************************/
+
+	//
+	// return the area that needs a repaint since the last call (null if nothing changed)
+	//
+	public Rectangle takeDirtyArea()
+	{
+		for (int i= 0; i<this.count; i++) {
+			if ((this.flags[i] & Scene.DIRTY)!=0) {
+				this.addDirty(i);
+				this.flags[i]&= ~Scene.DIRTY;
+			}
+		}
+
+		Rectangle area= this.dirtyArea;
+		this.dirtyArea= null;
+		return area;
+	}
+
+
+	//
+	// draw all visible nodes intersecting the clip area in z-order
+	//
+	public void render(Graphics g)
+	{
+		if (!this.orderValid) {
+			this.sortOrder();
+		}
+
+		Rectangle clip= g.getClipBounds();
+
+		for (int o= 0; o<this.count; o++) {
+			int i= this.order[o];
+
+			if ((this.flags[i] & Scene.VISIBLE)==0) {
+				continue;
+			}
+			if (clip!=null && !clip.intersects(this.x[i],this.y[i], this.w[i],this.h[i])) {
+				continue;	// culled
+			}
+
+			switch (this.kind[i]) {
+				case Scene.SPRITE:
+					if (this.image[i]!=null) {
+						g.drawImage(this.image[i], this.x[i],this.y[i], null);
+					}
+					break;
+
+				case Scene.OVAL:
+					g.setColor(this.color[i]);
+					g.fillOval(this.x[i],this.y[i], this.w[i],this.h[i]);
+					break;
+
+				case Scene.RECT:
+					g.setColor(this.color[i]);
+					g.fillRect(this.x[i],this.y[i], this.w[i],this.h[i]);
+					break;
+
+				case Scene.TEXT:
+					if (this.text[i]!=null) {
+						if (this.font[i]!=null) {
+							g.setFont(this.font[i]);
+						}
+						g.setColor(this.color[i]);
+						FontMetrics fm= g.getFontMetrics();
+						int tx= this.x[i] + (this.w[i]-fm.stringWidth(this.text[i]))/2;
+						int ty= this.y[i] + (this.h[i]-fm.getHeight())/2 + fm.getAscent();
+						g.drawString(this.text[i], tx,ty);
+					}
+					break;
+			}
+		}
+	}
+
+
+
+	/*****************************************************************************************
+	* internals
+	*****************************************************************************************/
+
+	private int add(int kind, int x, int y, int w, int h, int z)
+	{
+		if (this.count==this.kind.length) {
+			this.grow();
+		}
+
+		int node= this.count++;
+		this.kind[node]= kind;
+		this.x[node]= x;
+		this.y[node]= y;
+		this.w[node]= w;
+		this.h[node]= h;
+		this.z[node]= z;
+		this.flags[node]= Scene.VISIBLE | Scene.DIRTY;
+		this.orderValid= false;
+		return node;
+	}
+
+
+	// add the current bounds of a node to the dirty area
+	private void addDirty(int node)
+	{
+		if (this.w[node]<=0 || this.h[node]<=0) {
+			return;
+		}
+		Rectangle r= new Rectangle(this.x[node],this.y[node], this.w[node],this.h[node]);
+		if (this.dirtyArea==null) {
+			this.dirtyArea= r;
+		}
+		else {
+			this.dirtyArea.add(r);
+		}
+	}
+
+
+	// insertion sort by z (stable, so equal z draws in order of adding)
+	private void sortOrder()
+	{
+		for (int i= 0; i<this.count; i++) {
+			int node= i;
+			int j= i;
+			while (j>0 && this.z[this.order[j-1]]>this.z[node]) {
+				this.order[j]= this.order[j-1];
+				j--;
+			}
+			this.order[j]= node;
+		}
+		this.orderValid= true;
+	}
+
+
+	private void allocate(int capacity)
+	{
+		this.kind= new int[capacity];
+		this.x= new int[capacity];
+		this.y= new int[capacity];
+		this.w= new int[capacity];
+		this.h= new int[capacity];
+		this.z= new int[capacity];
+		this.flags= new int[capacity];
+		this.image= new Image[capacity];
+		this.color= new Color[capacity];
+		this.text= new String[capacity];
+		this.font= new Font[capacity];
+		this.order= new int[capacity];
+	}
+
+
+	private void grow()
+	{
+		int capacity= 2*this.kind.length;
+		int n= this.count;
+
+		this.kind= Scene.copyOf(this.kind, capacity, n);
+		this.x= Scene.copyOf(this.x, capacity, n);
+		this.y= Scene.copyOf(this.y, capacity, n);
+		this.w= Scene.copyOf(this.w, capacity, n);
+		this.h= Scene.copyOf(this.h, capacity, n);
+		this.z= Scene.copyOf(this.z, capacity, n);
+		this.flags= Scene.copyOf(this.flags, capacity, n);
+		this.order= new int[capacity];
+		this.orderValid= false;
+
+		Image[] images= new Image[capacity];
+		System.arraycopy(this.image, 0, images, 0, n);
+		this.image= images;
+
+		Color[] colors= new Color[capacity];
+		System.arraycopy(this.color, 0, colors, 0, n);
+		this.color= colors;
+
+		String[] texts= new String[capacity];
+		System.arraycopy(this.text, 0, texts, 0, n);
+		this.text= texts;
+
+		Font[] fonts= new Font[capacity];
+		System.arraycopy(this.font, 0, fonts, 0, n);
+		this.font= fonts;
+	}
+
+
+	private static int[] copyOf(int[] array, int capacity, int n)
+	{
+		int[] copy= new int[capacity];
+		System.arraycopy(array, 0, copy, 0, n);
+		return copy;
+	}
+}
@@ -0,0 +1,224 @@
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+//  Kindle-ConceptDemo
+//
+//  Source code (C) Copyright 2010 Markus Schmidt (m.schmidt@emtec.com)
+//  Published under MIT License (http://en.wikipedia.org/wiki/MIT_License)
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+
+
+package com.nowhere.sample;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Hashtable;
+import java.util.Vector;
+
+
+
+
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+//  Span tracing (begin/end events per thread)
+//
+//  App.logit() is fine to follow what happens, but reading interleaved log lines of
+//  start(), stop() and the EDT gets old quickly.  Instead, wrap interesting calls in
+//
+//  	Trace.begin("GameBoard::paint");
+//  	...
+//  	Trace.end("GameBoard::paint");
+//
+//  and export the session with Trace.export(file) (App.destroy() does this when tracing
+//  is on).  Tracing is off by default: every event takes the Trace lock on whatever thread
+//  it comes from, so only switch it on (Trace.enabled= true, e.g. at the top of
+//  App.create()) while you're looking into something.  The file
+//  is in Chrome's trace event format: open it in chrome://tracing (or ui.perfetto.dev)
+//  to see a timeline per thread.
+//
+//  Events go into a fixed size ring buffer of longs (two per event), so tracing does no
+//  allocation after the first event of each name/thread.  If the buffer overflows, the
+//  oldest events are dropped.  Threads are told apart by name (the worker and render
+//  threads are recreated on every start(), and we don't want to hold on to dead ones).
+//
+//  Note: the Kindle's VM has no System.nanoTime(), so timestamps have millisecond
+//  resolution.  Good enough to see lifecycle races and slow paints.
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+public class Trace
+{
+	// switch tracing on/off (when off, begin()/end() return right away)
+	public static boolean enabled= false;
+
+	// ring buffer size in events
+	static final int CAPACITY= 8192;
+
+	// phases
+	static final int PHASE_BEGIN= 0;
+	static final int PHASE_END= 1;
+
+
+	//
+	// trace buffer: [2*i] timestamp (ms since startTime), [2*i+1] phase | thread | name
+	//
+	private static long startTime= System.currentTimeMillis();
+	private static long[] events= new long[2*Trace.CAPACITY];
+	private static int next= 0;	 	// next event slot
+	private static int count= 0;	// valid events in the buffer (<= CAPACITY)
+	private static int dropped= 0;	// events overwritten by wrap-around
+
+	// interned names and threads (index is stored in the event)
+	private static Hashtable nameIds= new Hashtable();		// String -> Integer
+	private static Vector names= new Vector();
+	private static Hashtable threadIds= new Hashtable();	// String (thread name) -> Integer
+	private static Vector threadNames= new Vector();
+
+
+
+	// begin a span on the current thread
+	public static void begin(String name)
+	{
+		if (Trace.enabled) {
+			Trace.record(Trace.PHASE_BEGIN, name);
+		}
+	}
+
+	// end the span begun last on the current thread (name should match the begin() call)
+	public static void end(String name)
+	{
+		if (Trace.enabled) {
+			Trace.record(Trace.PHASE_END, name);
+		}
+	}
+
+
+	// throw away everything recorded so far
+	public static synchronized void reset()
+	{
+		Trace.next= 0;
+		Trace.count= 0;
+		Trace.dropped= 0;
+		Trace.nameIds.clear();
+		Trace.names.removeAllElements();
+		Trace.threadIds.clear();
+		Trace.threadNames.removeAllElements();
+		Trace.startTime= System.currentTimeMillis();
+	}
+
+
+
+	//
+	// add one event to the ring buffer
+	//
+	private static synchronized void record(int phase, String name)
+	{
+		long timestamp= System.currentTimeMillis()-Trace.startTime;
+
+		Integer nameid= (Integer)Trace.nameIds.get(name);
+		if (nameid==null) {
+			nameid= new Integer(Trace.names.size());
+			Trace.nameIds.put(name, nameid);
+			Trace.names.addElement(name);
+		}
+
+		String thread= Thread.currentThread().getName();
+		Integer threadid= (Integer)Trace.threadIds.get(thread);
+		if (threadid==null) {
+			threadid= new Integer(Trace.threadNames.size());
+			Trace.threadIds.put(thread, threadid);
+			Trace.threadNames.addElement(thread);
+		}
+
+		int slot= 2*Trace.next;
+		Trace.events[slot]= timestamp;
+		Trace.events[slot+1]= ((long)phase<<48) | ((long)threadid.intValue()<<24) | nameid.intValue();
+
+		Trace.next= (Trace.next+1) % Trace.CAPACITY;
+		if (Trace.count<Trace.CAPACITY) {
+			Trace.count++;
+		}
+		else {
+			Trace.dropped++;
+		}
+	}
+
+
+
+	//
+	// write the buffer as a Chrome trace event file (oldest event first)
+	//
+	public static synchronized void export(File file)
+	{
+		App.logit("Trace::export " + Trace.count + " events (" + Trace.dropped + " dropped) to " + file);
+
+		Writer out= null;
+		try {
+			out= new BufferedWriter(new FileWriter(file));
+			out.write("{\"traceEvents\":[\n");
+
+			// thread names first, so the viewer can label the rows
+			for (int t= 0; t<Trace.threadNames.size(); t++) {
+				if (t>0) {
+					out.write(",\n");
+				}
+				out.write("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":" + t
+						+ ",\"args\":{\"name\":\"" + Trace.escape((String)Trace.threadNames.elementAt(t)) + "\"}}");
+			}
+
+			int first= (Trace.next-Trace.count+Trace.CAPACITY) % Trace.CAPACITY;
+			for (int i= 0; i<Trace.count; i++) {
+				int slot= 2*((first+i) % Trace.CAPACITY);
+				long timestamp= Trace.events[slot];
+				long packed= Trace.events[slot+1];
+				int phase= (int)(packed>>48);
+				int threadid= (int)(packed>>24) & 0xFFFFFF;
+				int nameid= (int)packed & 0xFFFFFF;
+
+				out.write(",\n{\"name\":\"" + Trace.escape((String)Trace.names.elementAt(nameid))
+						+ "\",\"ph\":\"" + (phase==Trace.PHASE_BEGIN ? "B" : "E")
+						+ "\",\"ts\":" + (timestamp*1000)	// microseconds
+						+ ",\"pid\":1,\"tid\":" + threadid + "}");
+			}
+
+			out.write("\n],\"displayTimeUnit\":\"ms\"}\n");
+		}
+		catch (IOException e) {
+			App.logit("Trace::export failed : " + e);
+		}
+		finally {
+			if (out!=null) {
+				try {
+					out.close();
+				}
+				catch (IOException e) {
+					// nothing we can do about it
+				}
+			}
+		}
+
+		App.logit("Trace::export done");
+	}
+
+
+	// minimal JSON string escaping (our names are plain ASCII, thread names might not be)
+	private static String escape(String s)
+	{
+		StringBuffer sb= new StringBuffer(s.length()+8);
+		for (int i= 0; i<s.length(); i++) {
+			char c= s.charAt(i);
+			if (c=='"' || c=='\\') {
+				sb.append('\\').append(c);
+			}
+			else if (c<0x20) {
+				sb.append(' ');
+			}
+			else {
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,458 @@
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+//  Kindle-ConceptDemo
+//
+//  Source code (C) Copyright 2010 Markus Schmidt (m.schmidt@emtec.com)
+//  Published under MIT License (http://en.wikipedia.org/wiki/MIT_License)
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+
+
+package com.nowhere.sample;
+
+import java.awt.EventQueue;
+import java.util.Vector;
+
+
+
+
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+//  Low priority background work, tied to the kindlet lifecycle
+//
+//  The Kindle has a single (slow) core, so there is exactly one worker thread.  Tasks
+//  are queued in lanes, and the worker always takes the next task from the most
+//  important non-empty lane:
+//
+//  - DECODE: images etc. needed for the screen the user is looking at
+//  - COMPUTE: game logic (e.g. thinking about the next move)
+//  - PREFETCH: things we'll probably need later
+//
+//  The worker runs every task at a priority below the EDT (lower lanes lower still),
+//  so background work never gets in the way of input handling and painting.
+//
+//  Lifecycle (see App.java):
+//  - start(): resume() creates the worker thread
+//  - stop(): pause() asks the running task to quit and ends the thread (the framework
+//    wants all threads gone within 5 seconds).  Queued tasks stay queued for the next
+//    start(), and so does a task that quit because of the pause (it runs again from the
+//    beginning, so tasks need to be restartable)
+//  - destroy(): shutdown() cancels and drops everything that's still queued
+//
+//  Idle mode (see PowerMonitor.java): the prefetch lane is held back while the user is
+//  idle, so a queue full of "maybe later" work doesn't keep the device busy.  The pool
+//  listens to PowerMonitor to get the worker going again when the user is back.
+//
+//  Queues are bounded: offer() returns false when a lane is full (backpressure, the
+//  caller decides what to do instead), submit() waits a while for room, but never
+//  on the EDT.
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+public class Workers
+{
+	// lanes (lower is more important)
+	public static final int DECODE= 0;
+	public static final int COMPUTE= 1;
+	public static final int PREFETCH= 2;
+	static final int LANE_COUNT= 3;
+
+	static final String[] LANE_NAMES= { "decode", "compute", "prefetch" };
+
+	// per lane span/wakeup names, made once (no string building per task)
+	static final String[] TRACE_NAMES= { "Workers::decode", "Workers::compute", "Workers::prefetch" };
+	static final String[] WAKEUP_NAMES= { "worker-decode", "worker-compute", "worker-prefetch" };
+	static final int[] LANE_PRIORITIES= { Thread.NORM_PRIORITY-1, Thread.NORM_PRIORITY-2, Thread.MIN_PRIORITY };
+
+	// how long pause() waits for a running task to notice it was cancelled
+	static final long PAUSE_JOIN_MILLIS= 1000;
+
+
+
+	/////////////////////////////////////////////////////////////////////////////////////////
+	//
+	//  A piece of background work.  Long running tasks should check isCancelled()
+	//  periodically and return quickly when it's true (cancelled, or the app is pausing).
+	//  Once it has returned true, the task must quit without doing anything visible: if
+	//  that was because of a pause, it runs again from the beginning after resume().
+	//
+	/////////////////////////////////////////////////////////////////////////////////////////
+	public static abstract class Task
+	{
+		volatile boolean cancelled;
+		volatile boolean interrupted;	// saw isCancelled() because of stop()/pause()
+		Workers pool;
+		long queuedAt;
+
+		// do the work (on the worker thread)
+		protected abstract void execute();
+
+		// ask the task to stop (it may still be running for a little while)
+		public void cancel()
+		{
+			this.cancelled= true;
+		}
+
+		public boolean isCancelled()
+		{
+			if (this.cancelled) {
+				return true;
+			}
+			if (App.isStopped() || (this.pool!=null && this.pool.paused)) {
+				this.interrupted= true;
+				return true;
+			}
+			return false;
+		}
+	}
+
+
+
+	//
+	// pool members (all guarded by "this")
+	//
+	Vector[] queues= new Vector[LANE_COUNT];
+	int capacity;
+	Thread thread;			// current worker thread (null while paused)
+	Task running;
+	boolean shutdown;
+	volatile boolean paused= true;	// (read by tasks without the lock)
+	PowerMonitor.Listener idleListener;
+
+	// statistics per lane
+	int[] submitted= new int[LANE_COUNT];
+	int[] started= new int[LANE_COUNT];
+	int[] completed= new int[LANE_COUNT];
+	int[] cancelled= new int[LANE_COUNT];
+	int[] rejected= new int[LANE_COUNT];
+	int[] maxDepth= new int[LANE_COUNT];
+	long[] totalWait= new long[LANE_COUNT];		// ms from queued to started
+	long[] totalLatency= new long[LANE_COUNT];	// ms from queued to done
+	long[] maxLatency= new long[LANE_COUNT];
+
+
+
+	//
+	// constructor (capacity is per lane)
+	//
+	public Workers(int capacity)
+	{
+		this.capacity= capacity;
+		for (int i= 0; i<LANE_COUNT; i++) {
+			this.queues[i]= new Vector(capacity);
+		}
+	}
+
+
+
+	/*****************************************************************************************
+	* queueing
+	*****************************************************************************************/
+
+	//
+	// queue a task, returns false if the lane is full or the pool is shut down
+	//
+	public synchronized boolean offer(int lane, Task task)
+	{
+		// cancelled tasks would sit in the lane until the worker gets to them (maybe not 
+		// before the next start()), don't let them take up room
+		this.purge(lane);
+		
+		if (this.shutdown || this.queues[lane].size()>=this.capacity) {
+			this.rejected[lane]++;
+			return false;
+		}
+
+		task.pool= this;
+		task.queuedAt= System.currentTimeMillis();
+		this.queues[lane].addElement(task);
+		this.submitted[lane]++;
+		this.maxDepth[lane]= Math.max(this.maxDepth[lane], this.queues[lane].size());
+
+		this.notifyAll();
+		return true;
+	}
+
+
+	//
+	// queue a task, waiting up to timeout ms for room in the lane (except on the EDT,
+	// which must never block on us).  returns false if there was no room in time.
+	//
+	public synchronized boolean submit(int lane, Task task, long timeout)
+	{
+		if (!EventQueue.isDispatchThread()) {
+			long until= System.currentTimeMillis()+timeout;
+			long now;
+			while (!this.shutdown && this.queues[lane].size()>=this.capacity
+					&& (now= System.currentTimeMillis())<until) {
+				try {
+					this.wait(until-now);
+				}
+				catch (InterruptedException e) {
+					break;
+				}
+			}
+		}
+
+		return this.offer(lane, task);
+	}
+
+
+	// number of queued tasks in a lane
+	public synchronized int getDepth(int lane)
+	{
+		return this.queues[lane].size();
+	}
+
+
+
+	/*****************************************************************************************
+	* lifecycle
+	*****************************************************************************************/
+
+	//
+	// (re)create the worker thread (call from start())
+	//
+	public synchronized void resume()
+	{
+		if (this.shutdown) {
+			return;
+		}
+		if (this.thread!=null) {
+			this.notifyAll();	// the worker may be waiting for the app to be started again
+			return;
+		}
+
+		App.logit("Workers::resume");
+
+		// prefetching waits while the user is idle, wake the worker when that's over
+		if (this.idleListener==null) {
+			this.idleListener=
+				new PowerMonitor.Listener()
+					{
+						public void idleEnded()
+						{
+							synchronized (Workers.this) {
+								Workers.this.notifyAll();
+							}
+						}
+					};
+		}
+		PowerMonitor.setListener(this.idleListener);
+
+		this.paused= false;
+		this.thread=
+			new Thread("Workers")
+				{
+					public void run()
+					{
+						Workers.this.work(this);
+					}
+				};
+		this.thread.setPriority(LANE_PRIORITIES[0]);
+		this.thread.start();
+	}
+
+
+	//
+	// end the worker thread, queued tasks are kept (call from stop())
+	//
+	public void pause()
+	{
+		Thread worker;
+		synchronized (this) {
+			worker= this.thread;
+			if (worker==null) {
+				return;
+			}
+
+			App.logit("Workers::pause");
+
+			this.thread= null;
+			this.paused= true;	// the running task will see this in isCancelled()
+			this.notifyAll();
+		}
+
+		// wait outside the lock, the worker needs it to finish
+		try {
+			worker.join(Workers.PAUSE_JOIN_MILLIS);
+		}
+		catch (InterruptedException e) {
+			// fall through
+		}
+		if (worker.isAlive()) {
+			App.logit("Workers::pause worker still busy after " + Workers.PAUSE_JOIN_MILLIS + "ms");
+		}
+
+		App.logit("Workers::pause done " + this.report());
+	}
+
+
+	//
+	// cancel and drop all queued tasks, end the worker thread (call from destroy())
+	//
+	public void shutdown()
+	{
+		synchronized (this) {
+			this.shutdown= true;
+			if (this.idleListener!=null) {
+				PowerMonitor.removeListener(this.idleListener);
+				this.idleListener= null;
+			}
+			for (int lane= 0; lane<LANE_COUNT; lane++) {
+				for (int i= 0; i<this.queues[lane].size(); i++) {
+					((Task)this.queues[lane].elementAt(i)).cancel();
+					this.cancelled[lane]++;
+				}
+				this.queues[lane].removeAllElements();
+			}
+			if (this.running!=null) {
+				this.running.cancel();
+			}
+		}
+
+		this.pause();
+
+		App.logit("Workers::shutdown done");
+	}
+
+
+
+	/*****************************************************************************************
+	* statistics
+	*****************************************************************************************/
+
+	public synchronized String report()
+	{
+		StringBuffer sb= new StringBuffer("[");
+		for (int lane= 0; lane<LANE_COUNT; lane++) {
+			int started= this.started[lane];
+			if (lane>0) {
+				sb.append(", ");
+			}
+			sb.append(LANE_NAMES[lane])
+				.append(": depth ").append(this.queues[lane].size()).append(" (max ").append(this.maxDepth[lane]).append(")")
+				.append(" submitted ").append(this.submitted[lane])
+				.append(" completed ").append(this.completed[lane])
+				.append(" cancelled ").append(this.cancelled[lane])
+				.append(" rejected ").append(this.rejected[lane]);
+			if (started>0) {
+				sb.append(" avg wait ").append(this.totalWait[lane]/started).append("ms")
+					.append(" avg latency ").append(this.totalLatency[lane]/started).append("ms")
+					.append(" max latency ").append(this.maxLatency[lane]).append("ms");
+			}
+		}
+		sb.append("]");
+		return sb.toString();
+	}
+
+
+
+	/*****************************************************************************************
+	* the worker
+	*****************************************************************************************/
+
+	private void work(Thread self)
+	{
+		App.logit("Workers::work");
+
+		while (true) {
+			Task task;
+			int lane= -1;
+			long wait;
+
+			synchronized (this) {
+				// nothing to do (or stop() is on its way to pause us): sleep until a task 
+				// arrives or we're paused (no polling)
+				while (this.thread==self && ((lane= this.nextLane())<0 || App.isStopped())) {
+					try {
+						this.wait();
+					}
+					catch (InterruptedException e) {
+						// check again
+					}
+				}
+				if (this.thread!=self) {
+					break;	// paused (the task, if any, stays queued)
+				}
+
+				task= (Task)this.queues[lane].elementAt(0);
+				this.queues[lane].removeElementAt(0);
+				this.running= task;
+				this.started[lane]++;
+				wait= System.currentTimeMillis()-task.queuedAt;
+				this.totalWait[lane]+= wait;
+				this.notifyAll();	// there's room in the lane now
+			}
+
+			self.setPriority(LANE_PRIORITIES[lane]);
+			task.interrupted= false;
+			PowerMonitor.wakeup(WAKEUP_NAMES[lane]);
+
+			if (!task.isCancelled()) {
+				Trace.begin(TRACE_NAMES[lane]);
+				try {
+					task.execute();
+				}
+				catch (Throwable e) {
+					App.logit("Workers::work task failed : " + e);
+				}
+				Trace.end(TRACE_NAMES[lane]);
+			}
+
+			synchronized (this) {
+				if (this.running==task) {	// (a resumed worker may have taken over after pause() gave up on us)
+					this.running= null;
+				}
+
+				// quit because of stop()/pause() rather than cancel(): run it again after resume() 
+				// (a task that finished before it noticed the pause is done, though)
+				if (task.interrupted && !task.cancelled && !this.shutdown) {
+					this.queues[lane].insertElementAt(task, 0);
+					this.started[lane]--;
+					this.totalWait[lane]-= wait;
+					continue;
+				}
+
+				long latency= System.currentTimeMillis()-task.queuedAt;
+				this.totalLatency[lane]+= latency;
+				this.maxLatency[lane]= Math.max(this.maxLatency[lane], latency);
+				if (task.cancelled) {
+					this.cancelled[lane]++;
+				}
+				else {
+					this.completed[lane]++;
+				}
+			}
+		}
+
+		App.logit("Workers::work done");
+	}
+
+
+	// drop the cancelled tasks from a lane
+	private void purge(int lane)
+	{
+		for (int i= this.queues[lane].size()-1; i>=0; i--) {
+			if (((Task)this.queues[lane].elementAt(i)).cancelled) {
+				this.queues[lane].removeElementAt(i);
+				this.cancelled[lane]++;
+			}
+		}
+	}
+
+
+	// the most important non-empty lane (-1 if all are empty).  In idle mode prefetching 
+	// waits while the user is idle (see PowerMonitor.java), idleEnded() wakes us up again.
+	private int nextLane()
+	{
+		for (int lane= 0; lane<LANE_COUNT; lane++) {
+			if (lane==PREFETCH && PowerMonitor.idleMode && PowerMonitor.isIdle()) {
+				continue;
+			}
+			if (!this.queues[lane].isEmpty()) {
+				return lane;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,435 @@
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+//  Kindle-ConceptDemo
+//
+//  Source code (C) Copyright 2010 Markus Schmidt (m.schmidt@emtec.com)
+//  Published under MIT License (http://en.wikipedia.org/wiki/MIT_License)
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+
+
+package com.nowhere.sample;
+
+import java.awt.Container;
+import java.awt.EventQueue;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Vector;
+
+
+
+
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+//  Stress harness: start()/stop()/destroy() storms
+//
+//  The comments in App.java say that threaded stop() and start() calls really can
+//  overlap (Q/A will make sure they do).  This hammers the lifecycle methods from many
+//  threads in random order while the EDT is kept busy painting the board, and checks:
+//
+//  - initalStart() must not build the board once a stop() has returned (and no start()
+//    came after it)
+//  - at most one board gets built per app, and every board that was built gets destroyed
+//  - destroy() must not throw, also when the board was never created
+//  - no exceptions on any thread (including the EDT)
+//  - once the board is up, nothing of ours wakes up while the user is idle, prefetching
+//    is held back meanwhile and runs again when the user is back (see PowerMonitor.java)
+//
+//  The order in which overlapping calls really happened is the order in which they get
+//  App's lock.  start() and stop() call Workers.resume()/pause() while holding it, so
+//  ProbeWorkers records the phase there instead of us guessing from the outside.  The
+//  boards come from ProbeApp.createGameBoard(), which is called under the lock as well.
+//
+//  It also reports the latency of start() and stop() (p50/p99/max), so lock contention
+//  regressions show up as numbers instead of Q/A failures.
+//
+//  Usage (see the "stress" target in build.xml, this needs the KDK libs):
+//
+//  	java com.nowhere.sample.LifecycleStress [rounds] [threads] [calls per thread]
+//
+//  Note: this runs on the build machine only and is not part of the .azw2
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+public class LifecycleStress
+{
+	// what App last did while holding its lock (see ProbeWorkers)
+	static final int PHASE_STARTED= 1;
+	static final int PHASE_STOPPED= 2;
+
+
+	//
+	// an App which measures its lifecycle calls and keeps track of its boards
+	//
+	static class ProbeApp extends App
+	{
+		LifecycleStress harness;
+		Vector<ProbeBoard> boards= new Vector<ProbeBoard>();
+		int phase;
+
+		ProbeApp(LifecycleStress harness)
+		{
+			this.harness= harness;
+			this.workers= new ProbeWorkers(this);	// (start() only creates one if there is none)
+		}
+
+		// called by initalStart(), under the lock
+		GameBoard createGameBoard()
+		{
+			if (this.phase==PHASE_STOPPED) {
+				this.harness.violation("initalStart built the board after stop()");
+			}
+			ProbeBoard board= new ProbeBoard(this.workers, this.renderer);
+			this.boards.addElement(board);
+			return board;
+		}
+
+		public void start()
+		{
+			long t= System.nanoTime();
+			super.start();
+			this.harness.startLatencies.add(System.nanoTime()-t);
+		}
+
+		public void stop()
+		{
+			long t= System.nanoTime();
+			super.stop();
+			this.harness.stopLatencies.add(System.nanoTime()-t);
+		}
+	}
+
+
+	//
+	// the worker pool of a ProbeApp.  start() resumes it and stop() pauses it, both while 
+	// holding App's lock, so this sees the lock holders in order.  (destroy() pauses it 
+	// once more, which is still "stopped")
+	//
+	static class ProbeWorkers extends Workers
+	{
+		ProbeApp app;
+
+		ProbeWorkers(ProbeApp app)
+		{
+			super(8);
+			this.app= app;
+		}
+
+		public synchronized void resume()
+		{
+			this.app.phase= PHASE_STARTED;
+			super.resume();
+		}
+
+		public void pause()
+		{
+			this.app.phase= PHASE_STOPPED;
+			super.pause();
+		}
+	}
+
+
+	//
+	// a board which knows whether it was destroyed
+	//
+	static class ProbeBoard extends GameBoard
+	{
+		private static final long serialVersionUID= 1L;
+
+		boolean destroyed;
+
+		ProbeBoard(Workers workers, FrameRenderer renderer)
+		{
+			super(workers, renderer);
+		}
+
+		void destroy()
+		{
+			super.destroy();
+			this.destroyed= true;
+		}
+	}
+
+
+	//
+	// a growable list of latencies (nanoseconds)
+	//
+	static class Latencies
+	{
+		long[] values= new long[1024];
+		int count;
+
+		synchronized void add(long value)
+		{
+			if (this.count==this.values.length) {
+				this.values= Arrays.copyOf(this.values, 2*this.count);
+			}
+			this.values[this.count++]= value;
+		}
+
+		synchronized String report()
+		{
+			if (this.count==0) {
+				return "no calls";
+			}
+			long[] sorted= Arrays.copyOf(this.values, this.count);
+			Arrays.sort(sorted);
+			return this.count + " calls, p50= " + Latencies.millis(sorted[this.count/2])
+					+ " p99= " + Latencies.millis(sorted[Math.min(this.count-1, (int)(this.count*0.99))])
+					+ " max= " + Latencies.millis(sorted[this.count-1]);
+		}
+
+		static String millis(long nanos)
+		{
+			return (nanos/1000)/1000.0 + "ms";
+		}
+	}
+
+
+
+	//
+	// harness members
+	//
+	Latencies startLatencies= new Latencies();
+	Latencies stopLatencies= new Latencies();
+	Vector<String> violations= new Vector<String>();
+	volatile ProbeApp app;
+	volatile boolean painting;
+	String idleReport;
+
+
+
+	public static void main(String[] args) throws Exception
+	{
+		int rounds= args.length>0 ? Integer.parseInt(args[0]) : 50;
+		int threads= args.length>1 ? Integer.parseInt(args[1]) : 8;
+		int calls= args.length>2 ? Integer.parseInt(args[2]) : 200;
+
+		// (make sure) no tracing, it would serialize all threads on its buffer lock
+		Trace.enabled= false;
+
+		LifecycleStress harness= new LifecycleStress();
+		int failed= harness.run(rounds, threads, calls);
+		System.exit(failed==0 ? 0 : 1);
+	}
+
+
+	//
+	// run all rounds and print the report, returns the number of violations
+	//
+	int run(int rounds, int threads, int calls) throws Exception
+	{
+		// exceptions anywhere (especially on the EDT) are violations
+		Thread.setDefaultUncaughtExceptionHandler(
+				new Thread.UncaughtExceptionHandler()
+					{
+						public void uncaughtException(Thread thread, Throwable e)
+						{
+							LifecycleStress.this.violation("exception on " + thread.getName() + ": " + e);
+							e.printStackTrace();
+						}
+					});
+
+		Thread painter= this.startPainter();
+
+		Random random= new Random(4711);
+		for (int r= 0; r<rounds; r++) {
+			// every fourth round the app gets destroyed without ever having been started
+			boolean nostart= (r%4==3);
+			this.runRound(threads, nostart ? 0 : calls, random.nextLong());
+		}
+
+		this.painting= false;
+		painter.join();
+
+		this.runIdleCheck();
+
+		System.out.println("LifecycleStress: " + rounds + " rounds, " + threads + " threads, " + calls + " calls per thread");
+		System.out.println("  start(): " + this.startLatencies.report());
+		System.out.println("  stop():  " + this.stopLatencies.report());
+		System.out.println("  idle check: " + this.idleReport);
+		System.out.println("  violations: " + this.violations.size());
+		for (int i= 0; i<this.violations.size(); i++) {
+			System.out.println("    " + this.violations.elementAt(i));
+		}
+
+		return this.violations.size();
+	}
+
+
+	//
+	// one kindlet lifecycle: create, a storm of start()/stop() calls, final stop(), destroy()
+	//
+	void runRound(int threads, final int calls, long seed) throws Exception
+	{
+		final ProbeApp app= new ProbeApp(this);
+
+		// no KindletContext off the device, so fake what create() would set up
+		app.rootContainer= new Container();
+		app.rootContainer.setSize(600, 800);
+		this.app= app;
+
+		Thread[] workers= new Thread[threads];
+		for (int t= 0; t<threads; t++) {
+			final Random random= new Random(seed+t);
+			workers[t]= new Thread("storm-" + t)
+					{
+						public void run()
+						{
+							for (int i= 0; i<calls; i++) {
+								if (random.nextBoolean()) {
+									app.start();
+								}
+								else {
+									app.stop();
+								}
+								if (random.nextInt(4)==0) {
+									Thread.yield();
+								}
+							}
+						}
+					};
+		}
+		for (int t= 0; t<threads; t++) {
+			workers[t].start();
+		}
+		for (int t= 0; t<threads; t++) {
+			workers[t].join();
+		}
+
+		// the framework always stops before destroying (and waits for the EDT to settle)
+		app.stop();
+		this.app= null;	  // stop painting it
+		EventQueue.invokeAndWait(new Runnable() { public void run() { } });
+
+		try {
+			app.destroy();
+		}
+		catch (Throwable e) {
+			this.violation("destroy() threw " + e + (app.gameBoard==null ? " (board never created)" : ""));
+		}
+
+		if (app.boards.size()>1) {
+			this.violation("built " + app.boards.size() + " boards for one app");
+		}
+		for (int i= 0; i<app.boards.size(); i++) {
+			if (!app.boards.elementAt(i).destroyed) {
+				this.violation("board " + (i+1) + " of " + app.boards.size() + " was never destroyed");
+			}
+		}
+	}
+
+
+	//
+	// start an app, let it build and lay out its board and then leave it alone: there must 
+	// not be a single idle wakeup.  A prefetch task queued while idle must wait for the 
+	// user, and then get going without anything else waking the worker.
+	//
+	void runIdleCheck() throws Exception
+	{
+		final ProbeApp app= new ProbeApp(this);
+		app.rootContainer= new Container();
+		app.rootContainer.setSize(600, 800);
+
+		app.start();
+		EventQueue.invokeAndWait(new Runnable() { public void run() { } });	 // initalStart()
+		EventQueue.invokeAndWait(
+				new Runnable()
+					{
+						public void run()
+						{
+							// lay out the board (no peers off the device, so validate() wouldn't), 
+							// the worker scales the images
+							app.rootContainer.doLayout();
+							app.gameBoard.doLayout();
+						}
+					});
+
+		Thread.sleep(PowerMonitor.IDLE_AFTER_MILLIS+1000);
+
+		final boolean[] prefetched= new boolean[1];
+		app.workers.offer(Workers.PREFETCH,
+				new Workers.Task()
+					{
+						protected void execute()
+						{
+							prefetched[0]= true;
+						}
+					});
+		Thread.sleep(500);
+		if (prefetched[0]) {
+			this.violation("prefetch ran while the user was idle");
+		}
+
+		int idle= PowerMonitor.getIdleWakeupCount();
+		if (PowerMonitor.getWakeupCount()==0) {
+			this.violation("idle check: no wakeups at all (board never laid out?)");
+		}
+
+		PowerMonitor.userAction();
+		for (int i= 0; i<100 && !prefetched[0]; i++) {
+			Thread.sleep(10);
+		}
+		if (!prefetched[0]) {
+			this.violation("prefetch still held back after the user came back");
+		}
+
+		app.stop();
+		app.destroy();
+
+		this.idleReport= PowerMonitor.getWakeupCount() + " wakeups, " + idle + " while idle";
+		if (idle>0) {
+			this.violation(idle + " wakeups while the user was idle");
+		}
+	}
+
+
+	//
+	// keep the EDT busy painting whatever board there is
+	//
+	Thread startPainter()
+	{
+		this.painting= true;
+
+		final BufferedImage frame= new BufferedImage(600, 800, BufferedImage.TYPE_BYTE_GRAY);
+		final Runnable paint=
+				new Runnable()
+					{
+						public void run()
+						{
+							ProbeApp app= LifecycleStress.this.app;
+							GameBoard board= (app!=null) ? app.gameBoard : null;
+							if (board!=null) {
+								Graphics g= frame.getGraphics();
+								g.setClip(0,0, 600,800);
+								board.paint(g);
+								g.dispose();
+							}
+						}
+					};
+
+		Thread painter= new Thread("painter")
+				{
+					public void run()
+					{
+						while (LifecycleStress.this.painting) {
+							try {
+								EventQueue.invokeAndWait(paint);
+							}
+							catch (Exception e) {
+								LifecycleStress.this.violation("paint failed: " + e);
+							}
+						}
+					}
+				};
+		painter.start();
+		return painter;
+	}
+
+
+	void violation(String message)
+	{
+		this.violations.addElement(message);
+	}
+}
@@ -0,0 +1,150 @@
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+//  Kindle-ConceptDemo
+//
+//  Source code (C) Copyright 2010 Markus Schmidt (m.schmidt@emtec.com)
+//  Published under MIT License (http://en.wikipedia.org/wiki/MIT_License)
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+
+
+package com.nowhere.sample;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+
+
+
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+//  Build tool: bundle the images of an asset folder into one resource pack
+//
+//  Usage (see the "pack" target in build.xml):
+//
+//  	java com.nowhere.sample.PackBuilder <pack file> <asset folder>
+//
+//  All *.gif, *.png and *.jpg files directly in the asset folder are packed (sorted by
+//  name).  See ResourcePack.java for the format and how it's read on the Kindle.
+//
+//  Note: this runs on the build machine only and is not part of the .azw2
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+public class PackBuilder
+{
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length!=2) {
+			System.err.println("usage: PackBuilder <pack file> <asset folder>");
+			System.exit(1);
+		}
+
+		File packfile= new File(args[0]);
+		File assetdir= new File(args[1]);
+
+		String[] names= assetdir.list();
+		if (names==null) {
+			throw new IOException("not a folder: " + assetdir);
+		}
+		Arrays.sort(names);
+
+		// collect the assets and their formats
+		int count= 0;
+		String[] formats= new String[names.length];
+		byte[][] contents= new byte[names.length][];
+		for (int i= 0; i<names.length; i++) {
+			String format= PackBuilder.formatOf(names[i]);
+			if (format!=null) {
+				formats[count]= format;
+				contents[count]= PackBuilder.readFile(new File(assetdir, names[i]));
+				names[count]= names[i];
+				count++;
+			}
+		}
+
+		// the index size depends on the names, so write it once to measure it
+		ByteArrayOutputStream indexbytes= new ByteArrayOutputStream();
+		DataOutputStream index= new DataOutputStream(indexbytes);
+		for (int i= 0; i<count; i++) {
+			index.writeUTF(names[i]);
+			index.writeUTF(formats[i]);
+			index.writeInt(0);
+			index.writeInt(0);
+		}
+		int headersize= ResourcePack.FIXED_HEADER_SIZE + indexbytes.size();
+
+		// now the real thing
+		int length= headersize;
+		for (int i= 0; i<count; i++) {
+			length+= contents[i].length;
+		}
+
+		DataOutputStream out= new DataOutputStream(new FileOutputStream(packfile));
+		try {
+			out.writeInt(ResourcePack.MAGIC);
+			out.writeInt(ResourcePack.VERSION);
+			out.writeInt(length);
+			out.writeInt(count);
+
+			int offset= headersize;
+			for (int i= 0; i<count; i++) {
+				out.writeUTF(names[i]);
+				out.writeUTF(formats[i]);
+				out.writeInt(offset);
+				out.writeInt(contents[i].length);
+				offset+= contents[i].length;
+			}
+
+			for (int i= 0; i<count; i++) {
+				out.write(contents[i]);
+			}
+		}
+		finally {
+			out.close();
+		}
+
+		System.out.println("PackBuilder: " + count + " assets, " + length + " bytes -> " + packfile);
+	}
+
+
+
+	// format name for packable files (null for everything else)
+	private static String formatOf(String name)
+	{
+		String lower= name.toLowerCase();
+		if (lower.endsWith(".gif")) {
+			return "gif";
+		}
+		if (lower.endsWith(".png")) {
+			return "png";
+		}
+		if (lower.endsWith(".jpg")) {
+			return "jpg";
+		}
+		return null;
+	}
+
+
+	private static byte[] readFile(File file) throws IOException
+	{
+		InputStream in= new FileInputStream(file);
+		try {
+			ByteArrayOutputStream bytes= new ByteArrayOutputStream((int)file.length());
+			byte[] buffer= new byte[8192];
+			int n;
+			while ((n= in.read(buffer))>0) {
+				bytes.write(buffer, 0, n);
+			}
+			return bytes.toByteArray();
+		}
+		finally {
+			in.close();
+		}
+	}
+}